@@ -0,0 +1,93 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Filling and summing a 100000 element INT array, and the dot product of two,
+// element by element in a FOR loop and with the built-ins.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class ArrayBenchmark {
+    private static final String LOOP = String.join("\n",
+            "VAR xs AS INT[100000]",
+            "VAR total = 0 AS INT",
+            "START",
+            "FOR (VAR i = 0 AS INT; i < LENGTH(xs); i = i + 1)",
+            "xs[i] = 3",
+            "FOR (VAR i = 0 AS INT; i < LENGTH(xs); i = i + 1)",
+            "total = total + xs[i]",
+            "OUTPUT: total",
+            "STOP",
+            "");
+    private static final String BUILTIN = String.join("\n",
+            "VAR xs AS INT[100000]",
+            "START",
+            "FILL(xs, 3)",
+            "OUTPUT: SUM(xs)",
+            "STOP",
+            "");
+
+    private static final String DOT_LOOP = String.join("\n",
+            "VAR xs, ys AS INT[100000]",
+            "VAR dot = 0 AS INT",
+            "START",
+            "FILL(xs, 3)",
+            "FILL(ys, 2)",
+            "FOR (VAR i = 0 AS INT; i < LENGTH(xs); i = i + 1)",
+            "dot = dot + xs[i] * ys[i]",
+            "OUTPUT: dot",
+            "STOP",
+            "");
+    private static final String DOT_BUILTIN = String.join("\n",
+            "VAR xs, ys AS INT[100000]",
+            "START",
+            "FILL(xs, 3)",
+            "FILL(ys, 2)",
+            "OUTPUT: DOT(xs, ys)",
+            "STOP",
+            "");
+
+    @Param({"loop", "builtin", "dot-loop", "dot-builtin"})
+    String mode;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        program = CfplEngine.compile(mode, source(), new Diagnostics());
+        Workloads.check(program.execute(Workloads.context(new byte[0])), mode);
+    }
+
+    private String source() {
+        switch (mode) {
+            case "loop":
+                return LOOP;
+            case "builtin":
+                return BUILTIN;
+            case "dot-loop":
+                return DOT_LOOP;
+            default:
+                return DOT_BUILTIN;
+        }
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
@@ -0,0 +1,62 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The loop workloads in the tree walker, meant to be run with -prof gc:
+// gc.alloc.rate.norm is the garbage one execution leaves. arrays fills and
+// sums a FLOAT array with a FOR loop. Loop traces are off, as they keep
+// their variables in registers and box nothing either way.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcfpl.trace=false")
+@State(Scope.Benchmark)
+public class BoxingBenchmark {
+
+    private static final String ARRAYS = String.join("\n",
+            "VAR xs AS FLOAT[10000]",
+            "VAR total = 0.0 AS FLOAT",
+            "START",
+            "FOR (VAR i = 0 AS INT; i < 10000; i = i + 1)",
+            "START",
+            "xs[i] = i * 0.5",
+            "STOP",
+            "FOR (VAR i = 0 AS INT; i < 10000; i = i + 1)",
+            "START",
+            "total = total + xs[i] * xs[i]",
+            "STOP",
+            "OUTPUT: total",
+            "STOP",
+            "");
+
+    @Param({"counting", "nested", "arrays"})
+    String workload;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        program = workload.equals("arrays")
+                ? CfplEngine.compile("arrays", ARRAYS, new Diagnostics())
+                : Workloads.compile(workload);
+        Workloads.check(program.execute(Workloads.context(new byte[0])), workload);
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
@@ -0,0 +1,103 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A whole run in a fresh JVM, as from the command line: the interpreter on
+// the script against the JAR cfplc made of it. hello is all startup, fib is
+// recursive fib(27) without memoization.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CfplcBenchmark {
+    private static final String HELLO = String.join("\n",
+            "START",
+            "OUTPUT: \"Hello\"",
+            "STOP",
+            "");
+    private static final String FIB = String.join("\n",
+            "@NOMEMO",
+            "FUN fib(n AS INT) AS INT",
+            "START",
+            "IF (n < 2)",
+            "START",
+            "RETURN n",
+            "STOP",
+            "RETURN fib(n - 1) + fib(n - 2)",
+            "STOP",
+            "START",
+            "OUTPUT: fib(27)",
+            "STOP",
+            "");
+
+    @Param({"hello", "fib"})
+    String workload;
+
+    @Param({"interpreter", "compiled"})
+    String engine;
+
+    List<String> command;
+
+    @Setup
+    public void setup() throws IOException, URISyntaxException, CompileError {
+        String source = workload.equals("hello") ? HELLO : FIB;
+        Path directory = Files.createTempDirectory("cfplc");
+        Path script = directory.resolve(workload + ".cfpl");
+        Files.write(script, source.getBytes(StandardCharsets.UTF_8));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        if (engine.equals("interpreter")) {
+            String classPath = Paths.get(Cfplc.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+            command = Arrays.asList(java, "-cp", classPath, CFPL.class.getName(), script.toString());
+        } else {
+            StringWriter errors = new StringWriter();
+            Map<String, byte[]> classes = Cfplc.compile(Cfplc.translate(workload, source, new Diagnostics()), errors);
+            if (classes == null)
+                throw new IllegalStateException(errors.toString());
+            Path jar = directory.resolve(workload + ".jar");
+            Cfplc.writeJar(jar, classes);
+            command = Arrays.asList(java, "-jar", jar.toString());
+        }
+        run();
+    }
+
+    @Benchmark
+    public int run() throws IOException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            Workloads.check(process.waitFor(), workload);
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
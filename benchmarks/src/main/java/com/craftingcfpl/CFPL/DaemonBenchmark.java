@@ -0,0 +1,116 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A whole run from the command line, as in CfplcBenchmark: a fresh JVM
+// running the interpreter against CfplClient handing the script to a
+// CfplServer that has already run it during warmup.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaemonBenchmark {
+    private static final String HELLO = String.join("\n",
+            "START",
+            "OUTPUT: \"Hello\"",
+            "STOP",
+            "");
+    private static final String FIB = String.join("\n",
+            "@NOMEMO",
+            "FUN fib(n AS INT) AS INT",
+            "START",
+            "IF (n < 2)",
+            "START",
+            "RETURN n",
+            "STOP",
+            "RETURN fib(n - 1) + fib(n - 2)",
+            "STOP",
+            "START",
+            "OUTPUT: fib(27)",
+            "STOP",
+            "");
+
+    @Param({"hello", "fib"})
+    String workload;
+
+    @Param({"interpreter", "daemon"})
+    String engine;
+
+    List<String> command;
+    Process server;
+
+    @Setup
+    public void setup() throws IOException, URISyntaxException, InterruptedException {
+        Path directory = Files.createTempDirectory("cfpld");
+        Path script = directory.resolve(workload + ".cfpl");
+        Files.write(script, (workload.equals("hello") ? HELLO : FIB).getBytes(StandardCharsets.UTF_8));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = Paths.get(CfplServer.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toString();
+
+        if (engine.equals("interpreter")) {
+            command = Arrays.asList(java, "-cp", classPath, CFPL.class.getName(), script.toString());
+        } else {
+            Path socket = directory.resolve("cfpl.sock");
+            server = new ProcessBuilder(java, "-cp", classPath, CfplServer.class.getName(),
+                    "--socket", socket.toString())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            for (int waited = 0; !Files.exists(socket); waited += 50) {
+                if (!server.isAlive() || waited > 30_000)
+                    throw new IllegalStateException("The CFPL server did not start.");
+                Thread.sleep(50);
+            }
+            command = Arrays.asList(java, "-cp", classPath, CfplClient.class.getName(),
+                    "--socket", socket.toString(), script.toString());
+        }
+        run();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (server != null) {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    @Benchmark
+    public int run() throws IOException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            Workloads.check(process.waitFor(), workload);
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Recursive fib(20) with and without memoization, and 100000 iterations of a
+// small function body either called through FUN or written inline in the loop.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FunctionBenchmark {
+    private static final String FIB = String.join("\n",
+            "@NOMEMO",
+            "FUN fib(n AS INT) AS INT",
+            "START",
+            "IF (n < 2)",
+            "START",
+            "RETURN n",
+            "STOP",
+            "RETURN fib(n - 1) + fib(n - 2)",
+            "STOP",
+            "START",
+            "OUTPUT: fib(20)",
+            "STOP",
+            "");
+    private static final String FIB_MEMO = FIB.substring("@NOMEMO\n".length());
+    private static final String CALL = String.join("\n",
+            "VAR total = 0 AS INT",
+            "FUN step(x AS INT) AS INT",
+            "VAR y = 0 AS INT",
+            "START",
+            "y = x * 3 % 7",
+            "RETURN y + 1",
+            "STOP",
+            "START",
+            "FOR (VAR i = 0 AS INT; i < 100000; i = i + 1)",
+            "total = total + step(i)",
+            "OUTPUT: total",
+            "STOP",
+            "");
+    private static final String INLINE = String.join("\n",
+            "VAR total = 0 AS INT",
+            "VAR y = 0 AS INT",
+            "START",
+            "FOR (VAR i = 0 AS INT; i < 100000; i = i + 1)",
+            "START",
+            "y = i * 3 % 7",
+            "total = total + y + 1",
+            "STOP",
+            "OUTPUT: total",
+            "STOP",
+            "");
+
+    @Param({"fib", "fib-memo", "call", "inline"})
+    String mode;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        program = CfplEngine.compile(mode, source(), new Diagnostics());
+        Workloads.check(program.execute(Workloads.context(new byte[0])), mode);
+    }
+
+    private String source() {
+        switch (mode) {
+            case "fib":
+                return FIB;
+            case "fib-memo":
+                return FIB_MEMO;
+            case "call":
+                return CALL;
+            default:
+                return INLINE;
+        }
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
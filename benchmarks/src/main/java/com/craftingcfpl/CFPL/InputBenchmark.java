@@ -0,0 +1,51 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The input workload fed from a byte stream versus replayed from a recorded log.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputBenchmark {
+
+    CfplProgram program;
+    byte[] input;
+    InputLog log;
+
+    @Setup
+    public void setup() {
+        program = Workloads.compile("input");
+        input = Workloads.input("input");
+        ExecutionContext context = Workloads.context(input);
+        Supplier<InputLog> recording = context.recordInput();
+        Workloads.check(program.execute(context), "input");
+        log = recording.get();
+    }
+
+    @Benchmark
+    public int stream() {
+        return program.execute(Workloads.context(input));
+    }
+
+    @Benchmark
+    public int replay() {
+        ExecutionContext context = Workloads.context(new byte[0]);
+        context.replayInput(log);
+        return program.execute(context);
+    }
+}
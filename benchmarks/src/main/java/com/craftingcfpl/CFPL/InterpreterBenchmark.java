@@ -0,0 +1,44 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// counting: WHILE loop with INT arithmetic; strings: & report lines;
+// nested: nested WHILE with IF/ELSE; input: INPUT: inside a loop.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"counting", "strings", "nested", "input"})
+    String workload;
+
+    CfplProgram program;
+    byte[] input;
+
+    @Setup
+    public void setup() {
+        program = Workloads.compile(workload);
+        input = Workloads.input(workload);
+        Workloads.check(program.execute(Workloads.context(input)), workload);
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(input));
+    }
+}
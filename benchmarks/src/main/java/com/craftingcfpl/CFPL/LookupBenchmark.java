@@ -0,0 +1,57 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A FOR loop whose body reads three globals, the loop variable, and assigns
+// a global, all from inside depth nested START ... STOP blocks. Every name
+// is depth + 1 or more Environments away. Loop traces are off, as they
+// would take the loop out of the tree walker.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcfpl.trace=false")
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    @Param({"0", "4", "16"})
+    int depth;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        StringBuilder source = new StringBuilder()
+                .append("VAR a = 1, b = 2, total = 0 AS INT\n")
+                .append("START\n")
+                .append("FOR (VAR i = 0 AS INT; i < 50000; i = i + 1)\n")
+                .append("START\n");
+        for (int d = 0; d < depth; d++)
+            source.append("START\n");
+        source.append("total = total + a * b + i % 3\n");
+        for (int d = 0; d < depth; d++)
+            source.append("STOP\n");
+        source.append("STOP\n")
+                .append("OUTPUT: total\n")
+                .append("STOP\n");
+        program = CfplEngine.compile("lookup", source.toString(), new Diagnostics());
+        Workloads.check(program.execute(Workloads.context(new byte[0])), "lookup");
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
@@ -0,0 +1,62 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Numeric's specialized paths against the widen-to-double code that
+// visitBinaryExpr used to run for comparisons and mixed arithmetic.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NumericBenchmark {
+
+    Object intLeft = 1234;
+    Object intRight = 5678;
+    Object doubleRight = 56.78;
+    Token less = new Token(TokenType.LESS, "<", null, 1);
+    Token star = new Token(TokenType.STAR, "*", null, 1);
+
+    @Benchmark
+    public boolean widenedIntLessInt() {
+        return ((Number) intLeft).doubleValue() < ((Number) intRight).doubleValue();
+    }
+
+    @Benchmark
+    public boolean specializedIntLessInt() {
+        return Numeric.less(less, intLeft, intRight);
+    }
+
+    @Benchmark
+    public boolean widenedIntLessDouble() {
+        return ((Number) intLeft).doubleValue() < ((Number) doubleRight).doubleValue();
+    }
+
+    @Benchmark
+    public boolean specializedIntLessDouble() {
+        return Numeric.less(less, intLeft, doubleRight);
+    }
+
+    @Benchmark
+    public Object widenedIntTimesDouble() {
+        if (intLeft instanceof Integer && doubleRight instanceof Integer)
+            return (int) intLeft * (int) doubleRight;
+        return ((Number) intLeft).doubleValue() * ((Number) doubleRight).doubleValue();
+    }
+
+    @Benchmark
+    public Object specializedIntTimesDouble() {
+        return Numeric.multiply(star, intLeft, doubleRight);
+    }
+}
@@ -0,0 +1,64 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A loop the way our templates emit it: a disabled debug branch, a trace
+// variable that is written and never read, and a store that is immediately
+// overwritten. Run as compiled and after Optimizer.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OptimizerBenchmark {
+    private static final String TEMPLATE = String.join("\n",
+            "VAR total = 0 AS INT",
+            "VAR step = 0 AS INT",
+            "VAR trace = 0 AS INT",
+            "VAR debug = FALSE AS BOOL",
+            "START",
+            "FOR (VAR i = 0 AS INT; i < 100000; i = i + 1)",
+            "START",
+            "IF (FALSE)",
+            "START",
+            "OUTPUT: \"step \" & i",
+            "STOP",
+            "trace = 1",
+            "step = 0",
+            "step = 3",
+            "debug = TRUE",
+            "total = total + step",
+            "STOP",
+            "OUTPUT: total",
+            "STOP",
+            "");
+
+    @Param({"false", "true"})
+    boolean optimize;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        program = CfplEngine.compile("template", TEMPLATE, new Diagnostics(), optimize);
+        Workloads.check(program.execute(Workloads.context(new byte[0])), "template");
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
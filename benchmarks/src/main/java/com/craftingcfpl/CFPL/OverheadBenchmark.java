@@ -0,0 +1,66 @@
+package com.craftingcfpl.CFPL;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of the optional execution features on the counting loop.
+// plain: no budget, no listeners; limited: all three budgets set but never
+// reached; listener: one no-op ExecutionListener; coverage: --coverage.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OverheadBenchmark {
+
+    @Param({"plain", "limited", "listener", "coverage"})
+    String mode;
+
+    CfplProgram program;
+    byte[] input;
+
+    // Compiled through the oldest CfplEngine entry point, so that builds from
+    // before ExecutionListener can run plain with their JAR first on the
+    // class path.
+    @Setup
+    public void setup() throws CompileError {
+        program = CfplEngine.compile(Workloads.source("counting"));
+        input = Workloads.input("counting");
+    }
+
+    @Benchmark
+    public int execute() {
+        ExecutionContext context = Workloads.context(input);
+        switch (mode) {
+            case "limited":
+                context.setBudget(ExecutionBudget.UNLIMITED
+                        .withMaxStatements(Long.MAX_VALUE / 2)
+                        .withTimeout(Duration.ofHours(1))
+                        .withMaxStringBytes(Long.MAX_VALUE / 2));
+                break;
+            case "listener":
+                context.addListener(new ExecutionListener() {
+                });
+                break;
+            case "coverage":
+                context.addListener(new CoverageCollector(program));
+                break;
+            default:
+                break;
+        }
+        return program.execute(context);
+    }
+}
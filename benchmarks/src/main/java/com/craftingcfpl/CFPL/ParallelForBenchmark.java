@@ -0,0 +1,45 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The parallel workload (a sum and a min reduction) as PARALLEL FOR and as the
+// same loop with PARALLEL removed.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelForBenchmark {
+
+    @Param({"parallel", "sequential"})
+    String mode;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        String source = Workloads.source("parallel");
+        if (mode.equals("sequential"))
+            source = source.replace("PARALLEL FOR", "FOR");
+        program = CfplEngine.compile(mode, source, new Diagnostics());
+        Workloads.check(program.execute(Workloads.context(new byte[0])), mode);
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
@@ -0,0 +1,62 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// How each pipeline stage scales with the size of a generated program.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+
+    @Param({"16384", "262144", "4194304"})
+    long bytes;
+
+    @Param({"2"})
+    int loopDepth;
+
+    String source;
+    List<Token> tokens;
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        WorkloadGenerator.Shape shape = new WorkloadGenerator.Shape();
+        shape.targetBytes = bytes;
+        shape.loopDepth = loopDepth;
+        source = new WorkloadGenerator(shape).generate();
+        tokens = new Scanner(source, new Diagnostics()).scanTokens();
+        program = CfplEngine.compile("generated", source, new Diagnostics());
+        Workloads.check(program.execute(Workloads.context(new byte[0])), "generated");
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Scanner(source, new Diagnostics()).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, new Diagnostics()).parse();
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
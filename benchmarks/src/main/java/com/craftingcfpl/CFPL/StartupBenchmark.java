@@ -0,0 +1,101 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time from starting `java ... CFPL script.cfpl` to its first OUTPUT: line,
+// without and with an AppCDS archive made by a training run of the script,
+// as bin/cfpl does.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 15)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private static final String HELLO = String.join("\n",
+            "START",
+            "OUTPUT: \"Hello\"",
+            "STOP",
+            "");
+
+    @Param({"hello", "report"})
+    String workload;
+
+    @Param({"plain", "cds"})
+    String engine;
+
+    List<String> command;
+    Process process;
+
+    @Setup
+    public void setup() throws IOException, URISyntaxException, InterruptedException {
+        Path directory = Files.createTempDirectory("cfpls");
+        Path script = directory.resolve(workload + ".cfpl");
+        String source = workload.equals("hello") ? HELLO : Workloads.source(workload);
+        Files.write(script, source.getBytes(StandardCharsets.UTF_8));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = Paths.get(CFPL.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toString();
+
+        command = new ArrayList<>();
+        command.add(java);
+        if (engine.equals("cds")) {
+            Path archive = directory.resolve("cfpl.jsa");
+            Process training = new ProcessBuilder(java, "-XX:ArchiveClassesAtExit=" + archive, "-cp", classPath,
+                    CFPL.class.getName(), script.toString())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            Workloads.check(training.waitFor(), workload);
+            if (!Files.exists(archive))
+                throw new IllegalStateException("No archive was written.");
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.addAll(Arrays.asList("-cp", classPath, CFPL.class.getName(), script.toString()));
+    }
+
+    @Benchmark
+    public String firstLine() throws IOException {
+        process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line = out.readLine();
+        if (line == null)
+            throw new IllegalStateException(workload + " printed nothing.");
+        return line;
+    }
+
+    // Outside the measured time: the rest of the output and the exit.
+    @TearDown(Level.Invocation)
+    public void finish() throws IOException, InterruptedException {
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        Workloads.check(process.waitFor(), workload);
+    }
+}
@@ -0,0 +1,48 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Report lines built with long & chains of INTs, FLOATs, CHARs and BOOLs,
+// in a loop trace and in the tree walker (-Dcfpl.trace=false).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class StringBenchmark {
+
+    @Param({"strings", "report"})
+    String workload;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() {
+        program = Workloads.compile(workload);
+        Workloads.check(program.execute(Workloads.context(new byte[0])), workload);
+    }
+
+    @Benchmark
+    @Fork(1)
+    public int traced() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dcfpl.trace=false")
+    public int treeWalker() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
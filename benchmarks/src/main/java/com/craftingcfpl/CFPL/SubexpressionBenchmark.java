@@ -0,0 +1,59 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Generated code that repeats a * b + c four times per iteration, in an
+// assignment and in the following IF condition, without and with
+// CommonSubexpressions.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubexpressionBenchmark {
+    private static final String REPEATED = String.join("\n",
+            "VAR a, b = 4, c = 5 AS INT",
+            "VAR total = 0 AS INT",
+            "START",
+            "FOR (VAR i = 0 AS INT; i < 100000; i = i + 1)",
+            "START",
+            "a = i % 100",
+            "total = total + (a * b + c) * (a * b + c) - (a * b + c)",
+            "IF ((a * b + c) % 7 == 0)",
+            "START",
+            "total = total + 1",
+            "STOP",
+            "STOP",
+            "OUTPUT: total",
+            "STOP",
+            "");
+
+    @Param({"false", "true"})
+    boolean optimize;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() throws CompileError {
+        program = CfplEngine.compile("repeated", REPEATED, new Diagnostics(), optimize);
+        Workloads.check(program.execute(Workloads.context(new byte[0])), "repeated");
+    }
+
+    @Benchmark
+    public int execute() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+}
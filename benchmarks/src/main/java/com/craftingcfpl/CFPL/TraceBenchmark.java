@@ -0,0 +1,68 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// WHILE loops in LoopTraces against the tree walker (-Dcfpl.trace=false).
+// Peak: one program run over and over, so its loops keep their traces.
+// First run: a freshly compiled program, whose loops pay for counting
+// back-edges, recording and compiling their traces.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class TraceBenchmark {
+
+    @Param({"counting", "nested", "strings"})
+    String workload;
+
+    CfplProgram program;
+
+    @Setup
+    public void setup() {
+        program = Workloads.compile(workload);
+        Workloads.check(program.execute(Workloads.context(new byte[0])), workload);
+    }
+
+    @Benchmark
+    @Fork(1)
+    public int peakTraced() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dcfpl.trace=false")
+    public int peakTreeWalker() {
+        return program.execute(Workloads.context(new byte[0]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 10)
+    @Fork(3)
+    public int firstRunTraced() {
+        return Workloads.compile(workload).execute(Workloads.context(new byte[0]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 10)
+    @Fork(value = 3, jvmArgsAppend = "-Dcfpl.trace=false")
+    public int firstRunTreeWalker() {
+        return Workloads.compile(workload).execute(Workloads.context(new byte[0]));
+    }
+}
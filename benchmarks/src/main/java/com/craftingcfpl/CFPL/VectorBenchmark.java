@@ -0,0 +1,92 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The array kernels on 1M elements, plain loops against jdk.incubator.vector.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class VectorBenchmark {
+
+    @Param({"scalar", "vector"})
+    String ops;
+
+    ArrayOps kernels;
+    int[] ints;
+    int[] intsB;
+    int[] intResult;
+    double[] doubles;
+    double[] doublesB;
+    double[] doubleResult;
+
+    @Setup
+    public void setup() {
+        kernels = ops.equals("vector") ? new VectorArrayOps() : new ScalarArrayOps();
+        Random random = new Random(42);
+        int size = 1 << 20;
+        ints = random.ints(size, -1000, 1000).toArray();
+        intsB = random.ints(size, -1000, 1000).toArray();
+        intResult = new int[size];
+        doubles = random.doubles(size).toArray();
+        doublesB = random.doubles(size).toArray();
+        doubleResult = new double[size];
+    }
+
+    @Benchmark
+    public int sumInt() {
+        return kernels.sum(ints);
+    }
+
+    @Benchmark
+    public double sumFloat() {
+        return kernels.sum(doubles);
+    }
+
+    @Benchmark
+    public int minInt() {
+        return kernels.min(ints);
+    }
+
+    @Benchmark
+    public int dotInt() {
+        return kernels.dot(ints, intsB);
+    }
+
+    @Benchmark
+    public double dotFloat() {
+        return kernels.dot(doubles, doublesB);
+    }
+
+    @Benchmark
+    public int[] addInt() {
+        kernels.lanewise(ArrayOps.Op.ADD, ints, intsB, intResult);
+        return intResult;
+    }
+
+    @Benchmark
+    public double[] mulFloat() {
+        kernels.lanewise(ArrayOps.Op.MUL, doubles, doublesB, doubleResult);
+        return doubleResult;
+    }
+
+    @Benchmark
+    public int countInt() {
+        return kernels.count(ArrayOps.Compare.GT, ints, 0);
+    }
+}
@@ -0,0 +1,215 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Emits valid, terminating CFPL programs of a given shape. The same shape and
+ * seed always produce the same program, so generated inputs can stand in for
+ * checked-in files in benchmarks and regression runs.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.craftingcfpl.CFPL.WorkloadGenerator \
+ *     --bytes 1000000000 --loop-depth 3 --out big.cfpl
+ * </pre>
+ */
+public final class WorkloadGenerator {
+
+    public static final class Shape {
+        public long seed = 1;
+        // VAR declarations; every third one is a FLOAT, the rest are INTs.
+        public int vars = 8;
+        public int loopDepth = 2;
+        public int iterations = 3;
+        public int exprDepth = 3;
+        public int concatLength = 4;
+        // OUTPUT: statements per innermost loop iteration.
+        public int outputs = 1;
+        // The program grows unit by unit until it is at least this long.
+        public long targetBytes = 4096;
+    }
+
+    private final Shape shape;
+    private final Random random;
+    private Writer out;
+    private long written;
+
+    public WorkloadGenerator(Shape shape) {
+        if (shape.vars < 2 || shape.loopDepth < 0 || shape.iterations < 1
+                || shape.exprDepth < 1 || shape.concatLength < 1 || shape.outputs < 0)
+            throw new IllegalArgumentException("Invalid workload shape");
+        this.shape = shape;
+        this.random = new Random(shape.seed);
+    }
+
+    public String generate() {
+        StringWriter writer = new StringWriter();
+        try {
+            generate(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    public void generate(Writer writer) throws IOException {
+        out = writer;
+        written = 0;
+
+        for (int i = 0; i < shape.vars; i++) {
+            if (isFloat(i))
+                line("VAR v" + i + " = " + (random.nextInt(100) + 1) + ".5 AS FLOAT");
+            else
+                line("VAR v" + i + " = " + random.nextInt(100) + " AS INT");
+        }
+        for (int depth = 0; depth < shape.loopDepth; depth++)
+            line("VAR l" + depth + " = 0 AS INT");
+
+        line("START");
+        do {
+            unit(0);
+        } while (written < shape.targetBytes);
+        line("STOP");
+        out.flush();
+    }
+
+    private void unit(int depth) throws IOException {
+        if (depth == shape.loopDepth) {
+            body();
+            return;
+        }
+        String counter = "l" + depth;
+        line(counter + " = 0");
+        line("WHILE (" + counter + " < " + shape.iterations + ")");
+        line("START");
+        unit(depth + 1);
+        line(counter + " = " + counter + " + 1");
+        line("STOP");
+    }
+
+    private void body() throws IOException {
+        assignment();
+
+        line("IF (" + intVar() + " % " + (random.nextInt(5) + 2) + " == 0)");
+        line("START");
+        assignment();
+        line("STOP");
+        line("ELSE");
+        line("START");
+        assignment();
+        line("STOP");
+
+        for (int i = 0; i < shape.outputs; i++) {
+            StringBuilder chain = new StringBuilder("OUTPUT: \"out\"");
+            for (int j = 1; j < shape.concatLength; j++)
+                chain.append(j % 2 == 0 ? " & \" \"" : " & " + anyVar());
+            line(chain.toString());
+        }
+    }
+
+    private void assignment() throws IOException {
+        int target = random.nextInt(shape.vars);
+        if (isFloat(target))
+            line("v" + target + " = v" + target + " / 2 + " + intExpr(shape.exprDepth));
+        else
+            line("v" + target + " = " + intExpr(shape.exprDepth) + " % 10007");
+    }
+
+    // INT-only arithmetic; division and modulo only by non-zero literals.
+    private String intExpr(int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0)
+            return random.nextBoolean() ? intVar() : Integer.toString(random.nextInt(50) + 1);
+
+        String left = intExpr(depth - 1);
+        String right = intExpr(depth - 1);
+        switch (random.nextInt(5)) {
+            case 0:
+                return "(" + left + " + " + right + ")";
+            case 1:
+                return "(" + left + " - " + right + ")";
+            case 2:
+                return "(" + left + " * " + right + ")";
+            case 3:
+                return "(" + left + " / " + (random.nextInt(9) + 1) + ")";
+            default:
+                return "(" + left + " % " + (random.nextInt(9) + 2) + ")";
+        }
+    }
+
+    private String intVar() {
+        int index;
+        do {
+            index = random.nextInt(shape.vars);
+        } while (isFloat(index));
+        return "v" + index;
+    }
+
+    private String anyVar() {
+        return "v" + random.nextInt(shape.vars);
+    }
+
+    private static boolean isFloat(int index) {
+        return index % 3 == 2;
+    }
+
+    private void line(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+        written += text.length() + 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Shape shape = new Shape();
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":
+                    shape.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--vars":
+                    shape.vars = Integer.parseInt(args[++i]);
+                    break;
+                case "--loop-depth":
+                    shape.loopDepth = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    shape.iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--expr-depth":
+                    shape.exprDepth = Integer.parseInt(args[++i]);
+                    break;
+                case "--concat":
+                    shape.concatLength = Integer.parseInt(args[++i]);
+                    break;
+                case "--outputs":
+                    shape.outputs = Integer.parseInt(args[++i]);
+                    break;
+                case "--bytes":
+                    shape.targetBytes = Long.parseLong(args[++i]);
+                    break;
+                case "--out":
+                    file = args[++i];
+                    break;
+                default:
+                    System.err.println("Usage: WorkloadGenerator [--seed n] [--vars n] [--loop-depth n] [--iterations n]"
+                            + " [--expr-depth n] [--concat n] [--outputs n] [--bytes n] [--out file]");
+                    System.exit(64);
+            }
+        }
+
+        Writer writer = file == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+        try (writer) {
+            new WorkloadGenerator(shape).generate(writer);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Representative scripts shared by the benchmarks (src/main/resources/workloads).
+final class Workloads {
+    static final PrintStream NULL = new PrintStream(OutputStream.nullOutputStream());
+
+    private Workloads() {
+    }
+
+    static String source(String name) {
+        try (InputStream in = Workloads.class.getResourceAsStream("/workloads/" + name + ".cfpl")) {
+            if (in == null)
+                throw new IllegalArgumentException("No workload " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // What the INPUT: statements of a workload read.
+    static byte[] input(String name) {
+        StringBuilder sb = new StringBuilder();
+        if (name.equals("input")) {
+            for (int i = 0; i < 1000; i++)
+                sb.append(i).append(",2\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static CfplProgram compile(String name) {
+        try {
+            return CfplEngine.compile(name, source(name), new Diagnostics());
+        } catch (CompileError e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    static ExecutionContext context(byte[] input) {
+        return new ExecutionContext(new ByteArrayInputStream(input), NULL, NULL);
+    }
+
+    static void check(int status, String name) {
+        if (status != 0)
+            throw new IllegalStateException(name + " exited with " + status);
+    }
+}
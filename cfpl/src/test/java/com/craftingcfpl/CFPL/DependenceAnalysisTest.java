@@ -0,0 +1,74 @@
+package com.craftingcfpl.CFPL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DependenceAnalysisTest {
+
+    // The inner FOR's VAR j ends with its block; j = i writes the global.
+    @Test
+    void writeAfterNestedDeclarationIsShared() {
+        Stmt.ParallelFor loop = parallelFor(String.join("\n",
+                "VAR j = 0 AS INT",
+                "VAR xs AS INT[100]",
+                "START",
+                "PARALLEL FOR (VAR i = 0 AS INT; i < 100; i = i + 1)",
+                "START",
+                "FOR (VAR j = 0 AS INT; j < 2; j = j + 1)",
+                "START",
+                "xs[i] = xs[i] + j",
+                "STOP",
+                "j = i",
+                "STOP",
+                "STOP",
+                ""));
+        assertEquals("the body writes the shared variable j", loop.serialReason);
+    }
+
+    @Test
+    void nestedForVariableIsLocal() {
+        Stmt.ParallelFor loop = parallelFor(String.join("\n",
+                "VAR xs AS INT[100]",
+                "START",
+                "PARALLEL FOR (VAR i = 0 AS INT; i < 100; i = i + 1)",
+                "START",
+                "FOR (VAR j = 0 AS INT; j < 2; j = j + 1)",
+                "START",
+                "xs[i] = xs[i] + j",
+                "STOP",
+                "STOP",
+                "STOP",
+                ""));
+        assertNull(loop.serialReason);
+    }
+
+    private static Stmt.ParallelFor parallelFor(String source) {
+        Diagnostics diagnostics = new Diagnostics();
+        List<Stmt> statements = new Parser(new Scanner(source, diagnostics).scanTokens(), diagnostics).parse();
+        assertFalse(diagnostics.hadError());
+        Stmt.ParallelFor loop = find(statements);
+        if (loop != null)
+            return loop;
+        throw new AssertionError("No PARALLEL FOR in the program.");
+    }
+
+    private static Stmt.ParallelFor find(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            Stmt.ParallelFor loop = null;
+            if (statement instanceof Stmt.ParallelFor)
+                return (Stmt.ParallelFor) statement;
+            if (statement instanceof Stmt.Executable)
+                loop = find(((Stmt.Executable) statement).statements);
+            else if (statement instanceof Stmt.Block)
+                loop = find(((Stmt.Block) statement).statements);
+            if (loop != null)
+                return loop;
+        }
+        return null;
+    }
+}
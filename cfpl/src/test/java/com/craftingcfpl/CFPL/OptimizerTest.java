@@ -0,0 +1,81 @@
+package com.craftingcfpl.CFPL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+// FOR loops are desugared into blocks the optimizer removes statements from.
+class OptimizerTest {
+
+    // Folding a FOR whose condition is FALSE removes the loop from the
+    // block that holds its header VAR.
+    @Test
+    void foldsForWithFalseCondition() throws CompileError {
+        String source = String.join("\n",
+                "VAR s = 0 AS INT",
+                "START",
+                "FOR (VAR j = 0 AS INT; FALSE; j = j + 1)",
+                "START",
+                "s = s + j",
+                "STOP",
+                "OUTPUT: s",
+                "STOP",
+                "");
+        CfplProgram program = CfplEngine.compile("fold", source, new Diagnostics(), true);
+        assertTrue(program.optimizations().contains("line 3: WHILE condition is always FALSE, removed the loop"));
+        assertEquals(run(source, false), run(program));
+    }
+
+    // An increment storing a literal to a variable nobody reads is a dead
+    // store in the loop body's block.
+    @Test
+    void removesDeadStoreInForIncrement() throws CompileError {
+        String source = String.join("\n",
+                "VAR x = 0, n = 0 AS INT",
+                "START",
+                "FOR (VAR j = 0 AS INT; n < 3; x = 5)",
+                "START",
+                "n = n + 1",
+                "STOP",
+                "OUTPUT: n",
+                "STOP",
+                "");
+        CfplProgram program = CfplEngine.compile("stores", source, new Diagnostics(), true);
+        assertTrue(program.optimizations().contains("line 3: removed dead store to x (never read)"));
+        assertEquals(run(source, false), run(program));
+    }
+
+    @Test
+    void removesUnusedForVar() throws CompileError {
+        String source = String.join("\n",
+                "VAR s = 0 AS INT",
+                "START",
+                "FOR (VAR j = 0 AS INT; s < 3; s = s + 1)",
+                "START",
+                "OUTPUT: s",
+                "STOP",
+                "STOP",
+                "");
+        CfplProgram program = CfplEngine.compile("vars", source, new Diagnostics(), true);
+        assertTrue(program.optimizations().contains("line 3: removed unused VAR j"));
+        assertEquals(run(source, false), run(program));
+    }
+
+    private static String run(String source, boolean optimize) throws CompileError {
+        return run(CfplEngine.compile("script", source, new Diagnostics(), optimize));
+    }
+
+    private static String run(CfplProgram program) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(out, true, StandardCharsets.UTF_8);
+        int status = program.execute(new ExecutionContext(new ByteArrayInputStream(new byte[0]), print, print));
+        assertEquals(0, status, out.toString(StandardCharsets.UTF_8));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
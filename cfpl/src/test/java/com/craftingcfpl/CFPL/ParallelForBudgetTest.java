@@ -0,0 +1,70 @@
+package com.craftingcfpl.CFPL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+// The chunks of a PARALLEL FOR share what is left of the budget, so a limited
+// loop prints no more iterations than its sequential form.
+class ParallelForBudgetTest {
+
+    @Test
+    void statementLimitStopsNoLaterThanSequentialFor() throws CompileError {
+        String parallel = String.join("\n",
+                "VAR xs AS INT[64]",
+                "START",
+                "PARALLEL FOR (VAR k = 0 AS INT; k < 64; k = k + 1)",
+                "START",
+                "xs[k] = k",
+                "OUTPUT: k",
+                "STOP",
+                "STOP",
+                "");
+        ExecutionBudget budget = ExecutionBudget.UNLIMITED.withMaxStatements(100);
+        String sequential = run(parallel.replace("PARALLEL FOR", "FOR"), budget);
+        String limited = run(parallel, budget);
+        assertTrue(sequential.contains("Statement limit of 100 exceeded."), sequential);
+        assertTrue(limited.contains("Statement limit of 100 exceeded."), limited);
+        assertTrue(iterations(limited) <= iterations(sequential), limited);
+    }
+
+    @Test
+    void stringLimitStopsNoLaterThanSequentialFor() throws CompileError {
+        String parallel = String.join("\n",
+                "START",
+                "PARALLEL FOR (VAR k = 0 AS INT; k < 64; k = k + 1)",
+                "START",
+                "OUTPUT: \"item \" & k",
+                "STOP",
+                "STOP",
+                "");
+        ExecutionBudget budget = ExecutionBudget.UNLIMITED.withMaxStringBytes(100);
+        String sequential = run(parallel.replace("PARALLEL FOR", "FOR"), budget);
+        String limited = run(parallel, budget);
+        assertTrue(sequential.contains("String limit of 100 bytes exceeded."), sequential);
+        assertTrue(limited.contains("String limit of 100 bytes exceeded."), limited);
+        assertTrue(iterations(limited) <= iterations(sequential), limited);
+    }
+
+    // Lines printed before the limit was reported.
+    private static int iterations(String output) {
+        int lines = output.split("\n").length;
+        return lines - 2;
+    }
+
+    private static String run(String source, ExecutionBudget budget) throws CompileError {
+        CfplProgram program = CfplEngine.compile("script", source, new Diagnostics(), false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(out, true, StandardCharsets.UTF_8);
+        ExecutionContext context = new ExecutionContext(new ByteArrayInputStream(new byte[0]), print, print);
+        context.setBudget(budget);
+        assertEquals(70, program.execute(context), out.toString(StandardCharsets.UTF_8));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
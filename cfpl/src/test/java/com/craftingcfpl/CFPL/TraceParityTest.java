@@ -0,0 +1,367 @@
+package com.craftingcfpl.CFPL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Loop traces and the unboxed paths against the tree walker. A program must
+// print the same and end with the same status and error traced, untraced
+// (as with -Dcfpl.trace=false) and on the InstrumentedInterpreter, which
+// uses neither.
+class TraceParityTest {
+
+    private enum Mode {
+        TRACED, UNTRACED, INSTRUMENTED
+    }
+
+    @Test
+    void generatedProgramsRunAlike() throws CompileError {
+        for (long seed = 1; seed <= 40; seed++) {
+            String source = generate(seed);
+            Random random = new Random(seed);
+            ExecutionBudget[] budgets = {
+                    ExecutionBudget.UNLIMITED,
+                    ExecutionBudget.UNLIMITED.withMaxStatements(2000 + random.nextInt(20000)),
+                    ExecutionBudget.UNLIMITED.withMaxStringBytes(500 + random.nextInt(20000)),
+            };
+            for (boolean optimize : new boolean[] {false, true}) {
+                for (ExecutionBudget budget : budgets) {
+                    String untraced = run(source, optimize, budget, Mode.UNTRACED);
+                    String where = "seed " + seed + (optimize ? " with --optimize" : "") + "\n" + source;
+                    assertEquals(untraced, run(source, optimize, budget, Mode.TRACED), where);
+                    assertEquals(untraced, run(source, optimize, budget, Mode.INSTRUMENTED), where);
+                }
+            }
+            CfplProgram program = CfplEngine.compile("seed" + seed, source, new Diagnostics(), false);
+            execute(program, ExecutionBudget.UNLIMITED, Mode.TRACED);
+            assertTrue(loops(program).stream().anyMatch(loop -> loop.trace != null), "seed " + seed + " traced nothing");
+        }
+    }
+
+    // The ELSE arm is only taken after the loop has been recorded, so the
+    // trace leaves through it and is recompiled with it.
+    @Test
+    void sideExitsFinishTheIterationInTheTreeWalker() throws CompileError {
+        String source = String.join("\n",
+                "VAR i = 0, a = 0, b = 0 AS INT",
+                "VAR f = 1.5 AS FLOAT",
+                "START",
+                "WHILE (i < 150)",
+                "START",
+                "a = (a * 7 + i) % 1009",
+                "IF (i < 100)",
+                "START",
+                "f = f / 2 + a",
+                "STOP",
+                "ELSE",
+                "START",
+                "b = b + a",
+                "STOP",
+                "OUTPUT: a & \" \" & b & \" \" & f",
+                "i = i + 1",
+                "STOP",
+                "STOP",
+                "");
+        assertAlike(source, false, ExecutionBudget.UNLIMITED);
+
+        CfplProgram program = CfplEngine.compile("exit", source, new Diagnostics(), false);
+        execute(program, ExecutionBudget.UNLIMITED, Mode.TRACED);
+        LoopTrace trace = loops(program).get(0).trace;
+        assertNotNull(trace);
+        assertTrue(trace.generation > 0);
+    }
+
+    // Well-typed programs keep their variables' types, so the miss is forced
+    // by entering the trace with the loop's variables declared as others.
+    @Test
+    void guardMissesLeaveTheLoopToTheTreeWalker() throws CompileError {
+        String source = String.join("\n",
+                "VAR i = 0, total = 0 AS INT",
+                "START",
+                "WHILE (i < 100)",
+                "START",
+                "total = total + i",
+                "i = i + 1",
+                "STOP",
+                "OUTPUT: total",
+                "STOP",
+                "");
+        CfplProgram program = CfplEngine.compile("guard", source, new Diagnostics(), false);
+        assertEquals("4950\n", execute(program, ExecutionBudget.UNLIMITED, Mode.TRACED));
+        Stmt.While loop = loops(program).get(0);
+        assertNotNull(loop.trace);
+
+        CfplProgram floats = CfplEngine.compile("floats", "VAR i = 0.5, total = 0.5 AS FLOAT\nSTART\nSTOP\n",
+                new Diagnostics(), false);
+        Interpreter interpreter = new Interpreter(context(ExecutionBudget.UNLIMITED, new ByteArrayOutputStream()));
+        interpreter.interpret(floats.statements, floats.temporaries);
+        Token i = new Token(TokenType.IDENTIFIER, "i", null, 1);
+        for (int entry = 0; !loop.untraceable; entry++) {
+            assertTrue(entry < 100, "the loop was never given up");
+            assertFalse(LoopTrace.onBackEdge(interpreter, loop));
+            assertEquals(0.5, interpreter.lookUp(i));
+        }
+    }
+
+    @Test
+    void statementLimitInsideATrace() throws CompileError {
+        String source = String.join("\n",
+                "VAR i = 0, a = 0 AS INT",
+                "START",
+                "WHILE (i < 1000)",
+                "START",
+                "a = (a * 31 + i) % 1009",
+                "IF (i % 50 == 0)",
+                "START",
+                "OUTPUT: i & \" \" & a",
+                "STOP",
+                "i = i + 1",
+                "STOP",
+                "STOP",
+                "");
+        for (int limit = 400; limit < 4000; limit += 97) {
+            String output = assertAlike(source, false, ExecutionBudget.UNLIMITED.withMaxStatements(limit));
+            assertTrue(output.contains("Statement limit of " + limit + " exceeded."), output);
+        }
+    }
+
+    @Test
+    void stringLimitInsideATrace() throws CompileError {
+        String source = String.join("\n",
+                "VAR i = 0 AS INT",
+                "VAR s = \"\" AS STRING",
+                "VAR c = 'x' AS CHAR",
+                "START",
+                "WHILE (i < 1000)",
+                "START",
+                "s = \"item \" & i & c & \"\u0436\"",
+                "IF (i % 100 == 0)",
+                "START",
+                "OUTPUT: s",
+                "STOP",
+                "i = i + 1",
+                "STOP",
+                "STOP",
+                "");
+        for (int limit = 1000; limit < 20000; limit += 1231) {
+            String output = assertAlike(source, false, ExecutionBudget.UNLIMITED.withMaxStringBytes(limit));
+            assertTrue(output.contains("String limit of " + limit + " bytes exceeded."), output);
+        }
+    }
+
+    // With --optimize the repeated (a * b) becomes a CacheStore and a
+    // CacheLoad, which the trace keeps in a register.
+    @Test
+    void cachedSubexpressionsInsideATrace() throws CompileError {
+        String source = String.join("\n",
+                "VAR i = 0, a = 3, b = 5, x = 0, y = 0 AS INT",
+                "START",
+                "WHILE (i < 200)",
+                "START",
+                "a = (a + i) % 97",
+                "x = (a * b + i) % 1009",
+                "y = (a * b - i) % 101",
+                "IF (i % 40 == 0)",
+                "START",
+                "OUTPUT: x & \" \" & y",
+                "STOP",
+                "i = i + 1",
+                "STOP",
+                "STOP",
+                "");
+        CfplProgram program = CfplEngine.compile("cache", source, new Diagnostics(), true);
+        assertTrue(program.optimizations().stream().anyMatch(line -> line.contains("evaluating")),
+                program.optimizations().toString());
+        assertAlike(source, true, ExecutionBudget.UNLIMITED);
+        assertAlike(source, true, ExecutionBudget.UNLIMITED.withMaxStatements(1500));
+
+        execute(program, ExecutionBudget.UNLIMITED, Mode.TRACED);
+        assertNotNull(loops(program).get(0).trace);
+    }
+
+    private static String assertAlike(String source, boolean optimize, ExecutionBudget budget) throws CompileError {
+        String untraced = run(source, optimize, budget, Mode.UNTRACED);
+        assertEquals(untraced, run(source, optimize, budget, Mode.TRACED));
+        assertEquals(untraced, run(source, optimize, budget, Mode.INSTRUMENTED));
+        return untraced;
+    }
+
+    // Compiled again for every run: traces stay on the loops they were made for.
+    private static String run(String source, boolean optimize, ExecutionBudget budget, Mode mode)
+            throws CompileError {
+        return execute(CfplEngine.compile("script", source, new Diagnostics(), optimize), budget, mode);
+    }
+
+    // The output, errors included, and the exit status.
+    private static String execute(CfplProgram program, ExecutionBudget budget, Mode mode) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExecutionContext context = context(budget, out);
+        int status;
+        switch (mode) {
+            case UNTRACED:
+                context.begin();
+                Interpreter interpreter = new Interpreter(context) {
+                    @Override
+                    boolean tracing() {
+                        return false;
+                    }
+                };
+                interpreter.interpret(program.statements, program.temporaries);
+                context.out.flush();
+                status = context.diagnostics.exitStatus();
+                break;
+            case INSTRUMENTED:
+                context.addListener(new ExecutionListener() {
+                });
+                status = program.execute(context);
+                break;
+            default:
+                status = program.execute(context);
+                break;
+        }
+        String output = out.toString(StandardCharsets.UTF_8);
+        return status == 0 ? output : output + "status " + status + "\n";
+    }
+
+    private static ExecutionContext context(ExecutionBudget budget, ByteArrayOutputStream out) {
+        PrintStream print = new PrintStream(out, true, StandardCharsets.UTF_8);
+        ExecutionContext context = new ExecutionContext(new ByteArrayInputStream(new byte[0]), print, print);
+        context.setBudget(budget);
+        return context;
+    }
+
+    private static List<Stmt.While> loops(CfplProgram program) {
+        List<Stmt.While> loops = new ArrayList<>();
+        for (Stmt statement : program.statements)
+            loops(statement, loops);
+        return loops;
+    }
+
+    private static void loops(Stmt stmt, List<Stmt.While> loops) {
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt statement : ((Stmt.Block) stmt).statements)
+                loops(statement, loops);
+        } else if (stmt instanceof Stmt.If) {
+            loops(((Stmt.If) stmt).thenBranch, loops);
+            if (((Stmt.If) stmt).elseBranch != null)
+                loops(((Stmt.If) stmt).elseBranch, loops);
+        } else if (stmt instanceof Stmt.While) {
+            loops.add((Stmt.While) stmt);
+            loops(((Stmt.While) stmt).body, loops);
+        }
+    }
+
+    // An outer loop around hot inner WHILE loops over INT, FLOAT, CHAR, BOOL,
+    // STRING and array variables. IF conditions on the counter change arms
+    // after the trace was recorded, and repeated products give --optimize
+    // something to cache.
+    private static String generate(long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        lines.add("VAR v0 = " + random.nextInt(100) + ", v1 = " + random.nextInt(100) + ", v2 = "
+                + random.nextInt(100) + ", v3 = " + random.nextInt(100) + " AS INT");
+        lines.add("VAR o = 0, i = 0 AS INT");
+        lines.add("VAR f0 = " + (random.nextInt(100) + 1) + ".5, f1 = 0.25 AS FLOAT");
+        lines.add("VAR s = \"\" AS STRING");
+        lines.add("VAR c = '" + (char) ('a' + random.nextInt(26)) + "' AS CHAR");
+        lines.add("VAR b = \"FALSE\" AS BOOL");
+        lines.add("VAR xs AS INT[16]");
+        lines.add("START");
+        lines.add("WHILE (o < " + (2 + random.nextInt(2)) + ")");
+        lines.add("START");
+        for (int loop = 1 + random.nextInt(2); loop > 0; loop--) {
+            int iterations = 80 + random.nextInt(150);
+            lines.add("i = 0");
+            lines.add("WHILE (i < " + iterations + ")");
+            lines.add("START");
+            for (int statements = 3 + random.nextInt(4); statements > 0; statements--)
+                statement(random, lines, iterations, 0);
+            lines.add("IF (i % " + (20 + random.nextInt(40)) + " == 0)");
+            lines.add("START");
+            lines.add("OUTPUT: s & \" \" & v" + random.nextInt(4) + " & \" \" & f" + random.nextInt(2)
+                    + " & \" \" & b & \" \" & xs[" + random.nextInt(16) + "]");
+            lines.add("STOP");
+            lines.add("i = i + 1");
+            lines.add("STOP");
+        }
+        lines.add("OUTPUT: v0 & \" \" & v1 & \" \" & v2 & \" \" & v3 & \" \" & f0 & \" \" & f1 & \" \" & c");
+        lines.add("o = o + 1");
+        lines.add("STOP");
+        lines.add("STOP");
+        lines.add("");
+        return String.join("\n", lines);
+    }
+
+    private static void statement(Random random, List<String> lines, int iterations, int depth) {
+        int target = random.nextInt(4);
+        switch (random.nextInt(depth == 0 ? 8 : 6)) {
+            case 0:
+            case 1:
+                lines.add("v" + target + " = " + intExpr(random, 3) + " % 10007");
+                break;
+            case 2:
+                lines.add("f" + random.nextInt(2) + " = f" + random.nextInt(2) + " / 2 + " + intExpr(random, 2));
+                break;
+            case 3:
+                lines.add("xs[i % 16] = " + intExpr(random, 2) + " % 1000");
+                break;
+            case 4:
+                lines.add("s = \"" + (random.nextBoolean() ? "s" : "\u0436") + "\" & v" + random.nextInt(4) + " & c");
+                lines.add("b = v" + random.nextInt(4) + " > v" + random.nextInt(4));
+                break;
+            case 5: {
+                // The same product twice in one basic block.
+                int left = random.nextInt(4);
+                int right = random.nextInt(4);
+                int other = (Math.max(left, right) + 1) % 4;
+                lines.add("v" + other + " = (v" + left + " * v" + right + " + i) % 10007");
+                if (other != left && other != right)
+                    lines.add("f1 = f1 / 3 + (v" + left + " * v" + right + ") % 7");
+                break;
+            }
+            default:
+                // After the 64th back-edge the recorded arm stops being taken.
+                lines.add("IF (i " + (random.nextBoolean() ? "<" : ">") + " " + (65 + random.nextInt(iterations - 64))
+                        + ")");
+                lines.add("START");
+                statement(random, lines, iterations, depth + 1);
+                lines.add("STOP");
+                lines.add("ELSE");
+                lines.add("START");
+                statement(random, lines, iterations, depth + 1);
+                lines.add("STOP");
+                break;
+        }
+    }
+
+    // INT arithmetic; division and modulo only by non-zero literals.
+    private static String intExpr(Random random, int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0)
+            return random.nextBoolean() ? "v" + random.nextInt(4) : Integer.toString(random.nextInt(50) + 1);
+        String left = intExpr(random, depth - 1);
+        String right = intExpr(random, depth - 1);
+        switch (random.nextInt(5)) {
+            case 0:
+                return "(" + left + " + " + right + ")";
+            case 1:
+                return "(" + left + " - " + right + ")";
+            case 2:
+                return "(" + left + " * " + right + ")";
+            case 3:
+                return "(" + left + " / " + (random.nextInt(9) + 1) + ")";
+            default:
+                return "(" + left + " % " + (random.nextInt(9) + 2) + ")";
+        }
+    }
+}
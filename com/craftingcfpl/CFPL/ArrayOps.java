@@ -0,0 +1,132 @@
+package com.craftingcfpl.CFPL;
+
+// Whole-array kernels behind the array built-ins. INSTANCE is VectorArrayOps
+// when the JVM runs with --add-modules jdk.incubator.vector and ScalarArrayOps
+// otherwise (or with -Dcfpl.vector=false). Callers check lengths, emptiness
+// and INT division by zero first.
+interface ArrayOps {
+
+    ArrayOps INSTANCE = select();
+
+    enum Op {
+        ADD, SUB, MUL, DIV;
+
+        int apply(int a, int b) {
+            switch (this) {
+                case ADD:
+                    return a + b;
+                case SUB:
+                    return a - b;
+                case MUL:
+                    return a * b;
+                default:
+                    return a / b;
+            }
+        }
+
+        double apply(double a, double b) {
+            switch (this) {
+                case ADD:
+                    return a + b;
+                case SUB:
+                    return a - b;
+                case MUL:
+                    return a * b;
+                default:
+                    return a / b;
+            }
+        }
+    }
+
+    enum Compare {
+        LT, LE, GT, GE, EQ, NE;
+
+        static Compare of(String symbol) {
+            switch (symbol) {
+                case "<":
+                    return LT;
+                case "<=":
+                    return LE;
+                case ">":
+                    return GT;
+                case ">=":
+                    return GE;
+                case "==":
+                    return EQ;
+                case "<>":
+                    return NE;
+                default:
+                    return null;
+            }
+        }
+
+        boolean test(int a, int b) {
+            return test(Integer.compare(a, b));
+        }
+
+        boolean test(double a, double b) {
+            // Like the scalar operators: any comparison with NaN but <> is false.
+            if (Double.isNaN(a) || Double.isNaN(b))
+                return this == NE;
+            return test(a < b ? -1 : a > b ? 1 : 0);
+        }
+
+        private boolean test(int order) {
+            switch (this) {
+                case LT:
+                    return order < 0;
+                case LE:
+                    return order <= 0;
+                case GT:
+                    return order > 0;
+                case GE:
+                    return order >= 0;
+                case EQ:
+                    return order == 0;
+                default:
+                    return order != 0;
+            }
+        }
+    }
+
+    String name();
+
+    // result[i] = a[i] op b[i]; result may be a or b.
+    void lanewise(Op op, int[] a, int[] b, int[] result);
+
+    void lanewise(Op op, double[] a, double[] b, double[] result);
+
+    int sum(int[] values);
+
+    double sum(double[] values);
+
+    int min(int[] values);
+
+    double min(double[] values);
+
+    int max(int[] values);
+
+    double max(double[] values);
+
+    int dot(int[] a, int[] b);
+
+    double dot(double[] a, double[] b);
+
+    // How many values v satisfy v compare operand.
+    int count(Compare compare, int[] values, int operand);
+
+    int count(Compare compare, double[] values, double operand);
+
+    private static ArrayOps select() {
+        if (Boolean.parseBoolean(System.getProperty("cfpl.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (ArrayOps) Class.forName("com.craftingcfpl.CFPL.VectorArrayOps")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall through to the scalar loops.
+            }
+        }
+        return new ScalarArrayOps();
+    }
+}
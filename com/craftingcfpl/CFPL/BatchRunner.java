@@ -0,0 +1,281 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Runs many scripts in one JVM: CFPL --batch <directory|manifest>
+class BatchRunner {
+
+    static final class Result {
+        final Path script;
+        final int status;
+        final String stdout;
+        final String stderr;
+        final long nanos;
+
+        Result(Path script, int status, String stdout, String stderr, long nanos) {
+            this.script = script;
+            this.status = status;
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.nanos = nanos;
+        }
+    }
+
+    private final int workers;
+    private final boolean virtualThreads;
+    private final ExecutionBudget budget;
+
+    BatchRunner(int workers, boolean virtualThreads, ExecutionBudget budget) {
+        this.workers = workers;
+        this.virtualThreads = virtualThreads;
+        this.budget = budget;
+    }
+
+    static int run(String[] args, ExecutionBudget budget) throws IOException {
+        Path source = null;
+        Path outDir = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers":
+                    if (i + 1 >= args.length)
+                        return usage();
+                    try {
+                        workers = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        return usage();
+                    }
+                    break;
+                case "--virtual":
+                    virtualThreads = true;
+                    break;
+                case "--out":
+                    if (i + 1 >= args.length)
+                        return usage();
+                    outDir = Paths.get(args[++i]);
+                    break;
+                default:
+                    source = Paths.get(args[i]);
+                    break;
+            }
+        }
+
+        if (source == null || workers < 1)
+            return usage();
+
+        List<Path> scripts = collect(source);
+        BatchRunner runner = new BatchRunner(workers, virtualThreads, budget);
+
+        long start = System.nanoTime();
+        List<Result> results = runner.runAll(scripts);
+        long wall = System.nanoTime() - start;
+
+        if (outDir != null)
+            writeOutputs(outDir, root(source), results);
+
+        for (Result result : results) {
+            if (result.status != 0)
+                System.out.println("FAILED (" + result.status + ") " + result.script);
+        }
+        report(results, wall, System.out);
+
+        return results.stream().anyMatch(r -> r.status != 0) ? 1 : 0;
+    }
+
+    private static int usage() {
+        System.out.println("Usage: CFPL --batch <directory|manifest> [--workers n] [--virtual] [--out directory]");
+        return 64;
+    }
+
+    // A directory contributes every *.cfpl file below it; any other file is a
+    // manifest listing one script per line, relative to the manifest.
+    static List<Path> collect(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.walk(source)) {
+                return files.filter(p -> p.toString().endsWith(".cfpl"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        Path base = source.toAbsolutePath().getParent();
+        List<Path> scripts = new ArrayList<>();
+        for (String line : Files.readAllLines(source)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("//"))
+                continue;
+            scripts.add(base.resolve(line));
+        }
+        return scripts;
+    }
+
+    List<Result> runAll(List<Path> scripts) throws IOException {
+        ExecutorService executor = newExecutor();
+        // Virtual threads get one thread per task, so the pool size becomes a
+        // concurrency limit instead.
+        Semaphore permits = new Semaphore(workers);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Path script : scripts) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return runScript(script, budget);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Batch interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not available on this JVM, using "
+                        + workers + " platform threads.");
+            }
+        }
+        return Executors.newFixedThreadPool(workers);
+    }
+
+    static Result runScript(Path script, ExecutionBudget budget) {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(stdout, true, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(stderr, true, StandardCharsets.UTF_8);
+
+        long start = System.nanoTime();
+        int status;
+        try {
+            String source = new String(Files.readAllBytes(script), Charset.defaultCharset());
+            Diagnostics diagnostics = new Diagnostics(err);
+            try {
+                CfplProgram program = CfplEngine.compile(
+                        script.getFileName().toString(), source, diagnostics);
+                ExecutionContext context = new ExecutionContext(
+                        new ByteArrayInputStream(new byte[0]), out, err);
+                context.setBudget(budget);
+                Path log = script.resolveSibling(script.getFileName() + ".input");
+                if (Files.exists(log))
+                    context.replayInput(InputLog.read(log));
+                status = program.execute(context);
+            } catch (CompileError error) {
+                status = diagnostics.exitStatus();
+            }
+        } catch (IOException e) {
+            err.println("Cannot read " + script + ": " + e.getMessage());
+            status = 66;
+        } catch (RuntimeException | StackOverflowError e) {
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            err.print(trace);
+            status = 1;
+        }
+        long nanos = System.nanoTime() - start;
+
+        return new Result(script, status,
+                stdout.toString(StandardCharsets.UTF_8),
+                stderr.toString(StandardCharsets.UTF_8), nanos);
+    }
+
+    // The directory that scripts are relative to: the batch directory, or
+    // the one holding the manifest.
+    private static Path root(Path source) {
+        Path absolute = source.toAbsolutePath().normalize();
+        return Files.isDirectory(absolute) ? absolute : absolute.getParent();
+    }
+
+    // Outputs mirror the scripts' paths below root, so scripts with the same
+    // name in different directories keep apart. A manifest entry outside
+    // root is mirrored by its absolute path.
+    private static void writeOutputs(Path outDir, Path root, List<Result> results) throws IOException {
+        for (Result result : results) {
+            Path script = result.script.toAbsolutePath().normalize();
+            Path relative = root.relativize(script);
+            if (relative.startsWith(".."))
+                relative = script.getRoot().relativize(script);
+            Path base = outDir.resolve(relative.toString());
+            Files.createDirectories(base.getParent());
+            String name = base.getFileName().toString();
+            Files.write(base.resolveSibling(name + ".out"), result.stdout.getBytes(StandardCharsets.UTF_8));
+            Files.write(base.resolveSibling(name + ".err"), result.stderr.getBytes(StandardCharsets.UTF_8));
+            Files.write(base.resolveSibling(name + ".status"),
+                    (result.status + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static void report(List<Result> results, long wallNanos, PrintStream out) {
+        int failed = 0;
+        long[] latencies = new long[results.size()];
+        long total = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            Result result = results.get(i);
+            if (result.status != 0)
+                failed++;
+            latencies[i] = result.nanos;
+            total += result.nanos;
+        }
+        Arrays.sort(latencies);
+
+        double seconds = wallNanos / 1e9;
+        out.println();
+        out.println("scripts:     " + results.size() + " (" + (results.size() - failed) + " ok, " + failed + " failed)");
+        out.printf("wall time:   %.3f s%n", seconds);
+        out.printf("throughput:  %.1f scripts/s%n", seconds > 0 ? results.size() / seconds : 0.0);
+        if (latencies.length > 0) {
+            out.printf("latency ms:  mean %.3f  p50 %.3f  p90 %.3f  p99 %.3f  max %.3f%n",
+                    total / (double) latencies.length / 1e6,
+                    percentile(latencies, 50) / 1e6,
+                    percentile(latencies, 90) / 1e6,
+                    percentile(latencies, 99) / 1e6,
+                    latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
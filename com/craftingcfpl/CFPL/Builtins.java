@@ -0,0 +1,224 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Built-in functions over arrays. Each one is a single Java loop (SIMD when
+// ArrayOps.INSTANCE is vectorized), so FILL or SUM over a million elements
+// costs the interpreter one call.
+final class Builtins {
+    private static final ArrayOps OPS = ArrayOps.INSTANCE;
+
+    private Builtins() {
+    }
+
+    static boolean isBuiltin(String name) {
+        switch (name) {
+            case "LENGTH":
+            case "FILL":
+            case "SUM":
+            case "MIN":
+            case "MAX":
+            case "COPY":
+            case "ADD":
+            case "SUB":
+            case "MUL":
+            case "DIV":
+            case "DOT":
+            case "COUNT":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // FILL, COPY and the elementwise operations write to their first argument.
+    static boolean mutates(String name) {
+        switch (name) {
+            case "FILL":
+            case "COPY":
+            case "ADD":
+            case "SUB":
+            case "MUL":
+            case "DIV":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static Object call(Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "LENGTH":
+                arity(name, arguments, 1);
+                return array(name, arguments.get(0)).length();
+            case "FILL":
+                arity(name, arguments, 2);
+                fill(name, array(name, arguments.get(0)), arguments.get(1));
+                return null;
+            case "SUM":
+                arity(name, arguments, 1);
+                return sum(name, array(name, arguments.get(0)));
+            case "MIN":
+                arity(name, arguments, 1);
+                return extreme(name, array(name, arguments.get(0)), true);
+            case "MAX":
+                arity(name, arguments, 1);
+                return extreme(name, array(name, arguments.get(0)), false);
+            case "COPY":
+                arity(name, arguments, 2);
+                copy(name, array(name, arguments.get(0)), array(name, arguments.get(1)));
+                return null;
+            case "ADD":
+                return lanewise(name, ArrayOps.Op.ADD, arguments);
+            case "SUB":
+                return lanewise(name, ArrayOps.Op.SUB, arguments);
+            case "MUL":
+                return lanewise(name, ArrayOps.Op.MUL, arguments);
+            case "DIV":
+                return lanewise(name, ArrayOps.Op.DIV, arguments);
+            case "DOT":
+                arity(name, arguments, 2);
+                return dot(name, array(name, arguments.get(0)), array(name, arguments.get(1)));
+            case "COUNT":
+                arity(name, arguments, 3);
+                return count(name, array(name, arguments.get(0)), arguments.get(1), arguments.get(2));
+            default:
+                throw new RuntimeError(name, "Undefined function '" + name.lexeme + "'.");
+        }
+    }
+
+    private static void arity(Token name, List<Object> arguments, int expected) {
+        if (arguments.size() != expected) {
+            throw new RuntimeError(name, name.lexeme + " expects " + expected
+                    + " argument" + (expected == 1 ? "" : "s") + " but got " + arguments.size() + ".");
+        }
+    }
+
+    private static CfplArray array(Token name, Object value) {
+        if (!(value instanceof CfplArray))
+            throw new RuntimeError(name, name.lexeme + " expects an array.");
+        return (CfplArray) value;
+    }
+
+    private static void fill(Token name, CfplArray array, Object value) {
+        if (array instanceof CfplArray.IntArray && value instanceof Integer) {
+            Arrays.fill(((CfplArray.IntArray) array).values, (int) value);
+        } else if (array instanceof CfplArray.FloatArray && Numeric.isNumber(value)) {
+            Arrays.fill(((CfplArray.FloatArray) array).values, ((Number) value).doubleValue());
+        } else if (array instanceof CfplArray.BoolArray && value instanceof Boolean) {
+            Arrays.fill(((CfplArray.BoolArray) array).values, (boolean) value);
+        } else if (array instanceof CfplArray.CharArray && value instanceof Character) {
+            Arrays.fill(((CfplArray.CharArray) array).values, (char) value);
+        } else {
+            throw new RuntimeError(name, "Cannot fill " + array.typeName() + " with "
+                    + (value == null ? "null" : value.getClass().getSimpleName()) + ".");
+        }
+    }
+
+    private static Object sum(Token name, CfplArray array) {
+        if (array instanceof CfplArray.IntArray)
+            return OPS.sum(((CfplArray.IntArray) array).values);
+        if (array instanceof CfplArray.FloatArray)
+            return OPS.sum(((CfplArray.FloatArray) array).values);
+        throw numbersOnly(name);
+    }
+
+    private static Object extreme(Token name, CfplArray array, boolean min) {
+        if (array.length() == 0)
+            throw new RuntimeError(name, name.lexeme + " of an empty array.");
+        if (array instanceof CfplArray.IntArray) {
+            int[] values = ((CfplArray.IntArray) array).values;
+            return min ? OPS.min(values) : OPS.max(values);
+        }
+        if (array instanceof CfplArray.FloatArray) {
+            double[] values = ((CfplArray.FloatArray) array).values;
+            return min ? OPS.min(values) : OPS.max(values);
+        }
+        throw numbersOnly(name);
+    }
+
+    // ADD(result, a, b) sets result[i] to a[i] + b[i]; likewise SUB, MUL, DIV.
+    private static Object lanewise(Token name, ArrayOps.Op op, List<Object> arguments) {
+        arity(name, arguments, 3);
+        CfplArray result = array(name, arguments.get(0));
+        CfplArray a = array(name, arguments.get(1));
+        CfplArray b = array(name, arguments.get(2));
+        sameShape(name, result, a);
+        sameShape(name, result, b);
+        if (result instanceof CfplArray.IntArray) {
+            int[] divisors = ((CfplArray.IntArray) b).values;
+            if (op == ArrayOps.Op.DIV && OPS.count(ArrayOps.Compare.EQ, divisors, 0) > 0)
+                throw new RuntimeError(name, "Division by zero.");
+            OPS.lanewise(op, ((CfplArray.IntArray) a).values, divisors,
+                    ((CfplArray.IntArray) result).values);
+        } else if (result instanceof CfplArray.FloatArray) {
+            OPS.lanewise(op, ((CfplArray.FloatArray) a).values, ((CfplArray.FloatArray) b).values,
+                    ((CfplArray.FloatArray) result).values);
+        } else {
+            throw numbersOnly(name);
+        }
+        return null;
+    }
+
+    private static Object dot(Token name, CfplArray a, CfplArray b) {
+        sameShape(name, a, b);
+        if (a instanceof CfplArray.IntArray)
+            return OPS.dot(((CfplArray.IntArray) a).values, ((CfplArray.IntArray) b).values);
+        if (a instanceof CfplArray.FloatArray)
+            return OPS.dot(((CfplArray.FloatArray) a).values, ((CfplArray.FloatArray) b).values);
+        throw numbersOnly(name);
+    }
+
+    // COUNT(xs, ">", 5): how many elements compare true against the operand.
+    private static Object count(Token name, CfplArray array, Object symbol, Object operand) {
+        ArrayOps.Compare compare = symbol instanceof String ? ArrayOps.Compare.of((String) symbol) : null;
+        if (compare == null)
+            throw new RuntimeError(name, "COUNT expects one of \"<\", \"<=\", \">\", \">=\", \"==\" or \"<>\".");
+        if (array instanceof CfplArray.IntArray && operand instanceof Integer)
+            return OPS.count(compare, ((CfplArray.IntArray) array).values, (int) operand);
+        if (array instanceof CfplArray.FloatArray && Numeric.isNumber(operand))
+            return OPS.count(compare, ((CfplArray.FloatArray) array).values, ((Number) operand).doubleValue());
+        throw new RuntimeError(name, "Cannot compare " + array.typeName() + " with "
+                + (operand == null ? "null" : operand.getClass().getSimpleName()) + ".");
+    }
+
+    private static void sameShape(Token name, CfplArray a, CfplArray b) {
+        if (a.getClass() != b.getClass())
+            throw new RuntimeError(name, name.lexeme + " cannot mix " + a.typeName() + " and " + b.typeName() + ".");
+        if (a.length() != b.length())
+            throw new RuntimeError(name, name.lexeme + " needs arrays of the same length.");
+    }
+
+    private static RuntimeError numbersOnly(Token name) {
+        return new RuntimeError(name, name.lexeme + " expects INT or FLOAT arrays.");
+    }
+
+    // COPY(destination, source) copies all of source to the start of destination.
+    private static void copy(Token name, CfplArray destination, CfplArray source) {
+        if (destination.getClass() != source.getClass()) {
+            throw new RuntimeError(name, "Cannot copy " + source.typeName()
+                    + " into " + destination.typeName() + ".");
+        }
+        if (destination.length() < source.length()) {
+            throw new RuntimeError(name, "Cannot copy " + source.length()
+                    + " elements into an array of length " + destination.length() + ".");
+        }
+        Object from;
+        Object to;
+        if (source instanceof CfplArray.IntArray) {
+            from = ((CfplArray.IntArray) source).values;
+            to = ((CfplArray.IntArray) destination).values;
+        } else if (source instanceof CfplArray.FloatArray) {
+            from = ((CfplArray.FloatArray) source).values;
+            to = ((CfplArray.FloatArray) destination).values;
+        } else if (source instanceof CfplArray.BoolArray) {
+            from = ((CfplArray.BoolArray) source).values;
+            to = ((CfplArray.BoolArray) destination).values;
+        } else {
+            from = ((CfplArray.CharArray) source).values;
+            to = ((CfplArray.CharArray) destination).values;
+        }
+        System.arraycopy(from, 0, to, 0, source.length());
+    }
+}
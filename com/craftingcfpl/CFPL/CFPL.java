@@ -3,38 +3,107 @@ package com.craftingcfpl.CFPL;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class CFPL {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+
+    // Command line switches shared by file and prompt runs, and by CfplServer.
+    static class Options {
+        ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+        boolean profile = false;
+        boolean coverage = false;
+        boolean memoStats = false;
+        boolean optimize = false;
+        boolean verbose = false;
+        Path recordInput;
+        Path replayInput;
+    }
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+        Options options = new Options();
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            int last = option(options, args, i);
+            if (last < 0)
+                rest.add(args[i]);
+            else
+                i = last;
+        }
+
+        if (rest.size() > 0 && rest.get(0).equals("--batch")) {
+            System.exit(BatchRunner.run(rest.subList(1, rest.size()).toArray(new String[0]), options.budget));
+        } else if (rest.size() > 1) {
+            System.out.println("Usage: jlox [options] [script]");
+            System.out.println("       jlox [limits] --batch <directory|manifest> [--workers n] [--virtual] [--out directory]");
+            System.out.println("limits: [--max-statements n] [--timeout-ms n] [--max-string-bytes n]");
+            System.out.println("options: limits, [--optimize] [--verbose] [--profile] [--coverage] [--memo-stats] [--record-input file] [--replay-input file]");
             System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        } else if (rest.size() == 1) {
+            runFile(rest.get(0), options);
         } else {
-            runPrompt();
+            runPrompt(options);
         }
     }
     
-    private static void runFile(String path) throws IOException {
+    // Reads the option at args[i], with its value if it takes one, into
+    // options. Returns the index of the last argument used, or -1 if args[i]
+    // is not an option.
+    static int option(Options options, String[] args, int i) {
+        switch (args[i]) {
+            case "--max-statements":
+                options.budget = options.budget.withMaxStatements(Long.parseLong(args[++i]));
+                return i;
+            case "--timeout-ms":
+                options.budget = options.budget.withTimeout(Duration.ofMillis(Long.parseLong(args[++i])));
+                return i;
+            case "--max-string-bytes":
+                options.budget = options.budget.withMaxStringBytes(Long.parseLong(args[++i]));
+                return i;
+            case "--profile":
+                options.profile = true;
+                return i;
+            case "--coverage":
+                options.coverage = true;
+                return i;
+            case "--optimize":
+                options.optimize = true;
+                return i;
+            case "--verbose":
+                options.verbose = true;
+                return i;
+            case "--memo-stats":
+                options.memoStats = true;
+                return i;
+            case "--record-input":
+                options.recordInput = Paths.get(args[++i]);
+                return i;
+            case "--replay-input":
+                options.replayInput = Paths.get(args[++i]);
+                return i;
+            default:
+                return -1;
+        }
+    }
+
+    private static void runFile(String path, Options options) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-        if (hadError)
-            System.exit(65);
-        if (hadRuntimeError)
-            System.exit(70);
+        int status = run(path, new String(bytes, Charset.defaultCharset()),
+                new ExecutionContext(), options, System.err);
+        if (status != 0)
+            System.exit(status);
     }
 
-    private static void runPrompt() throws IOException {
+    private static void runPrompt(Options options) throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
         StringBuilder sb = new StringBuilder();
@@ -51,55 +120,73 @@ public class CFPL {
             }
             sb.append(line);
             sb.append('\n');
-            hadError = false;
-            hadRuntimeError = false;
         }
 
         System.out.println("\n <<< RUNNING CODE... >>>");
-        run(sb.toString());
+        run("prompt", sb.toString(),
+                new ExecutionContext(reader, System.out, System.err), options, System.err);
     }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        // Stop if there was a syntax error.
-        // for (Token tkn : tokens) {
-        //     System.out.println(tkn);
-            
-        // }
-        if (hadError)
-            return;
-
-        interpreter.interpret(statements);
-
-        // System.out.println(new ASTPrinter().print(statements));  
-    }   
+    // Also runs the scripts of CfplServer, which has its own err and only
+    // lets through options that write no files.
+    static int run(String path, String source, ExecutionContext context,
+            Options options, PrintStream err) throws IOException {
+        String name = Paths.get(path).getFileName().toString();
+        Diagnostics diagnostics = new Diagnostics(err);
+        CfplProgram program;
+        try {
+            program = CfplEngine.compile(name, source, diagnostics, options.optimize);
+        } catch (CompileError error) {
+            return diagnostics.exitStatus();
+        }
 
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
+        if (options.verbose) {
+            for (String optimization : program.optimizations())
+                err.println("Optimizer: " + optimization);
+        }
 
-    static void report(int line, String where,
-            String message) {
-        System.err.println(
-                "[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
-    }
+        context.setBudget(options.budget);
+        if (options.replayInput != null)
+            context.replayInput(InputLog.read(options.replayInput));
+        Supplier<InputLog> recording = null;
+        if (options.recordInput != null)
+            recording = context.recordInput();
+        Profiler profiler = null;
+        if (options.profile) {
+            profiler = new Profiler(name, source);
+            context.addListener(profiler);
+        }
+        CoverageCollector coverage = null;
+        if (options.coverage) {
+            coverage = new CoverageCollector(program);
+            context.addListener(coverage);
+        }
 
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+        long memoHits = CfplMetrics.INSTANCE.getMemoHits();
+        long memoMisses = CfplMetrics.INSTANCE.getMemoMisses();
+        int status = program.execute(context);
+        if (options.memoStats) {
+            err.println("Memoized calls: " + (CfplMetrics.INSTANCE.getMemoHits() - memoHits) + " hits, "
+                    + (CfplMetrics.INSTANCE.getMemoMisses() - memoMisses) + " misses");
         }
-    }
 
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() +
-                "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
-}
\ No newline at end of file
+        if (recording != null) {
+            recording.get().write(options.recordInput);
+            err.println("Input written to " + options.recordInput);
+        }
+        if (profiler != null) {
+            Path stacks = Paths.get(name + ".collapsed");
+            profiler.printHotLines(err, 20);
+            profiler.writeCollapsedStacks(stacks);
+            err.println("Collapsed stacks written to " + stacks);
+        }
+        if (coverage != null) {
+            Path lcov = Paths.get(name + ".lcov");
+            try (Writer writer = Files.newBufferedWriter(lcov, StandardCharsets.UTF_8)) {
+                coverage.writeLcov(writer, path);
+            }
+            err.println("Coverage written to " + lcov);
+        }
+        return status;
+    }   
+}
@@ -0,0 +1,278 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Arrays;
+
+// Runtime value of a VAR xs AS INT[n] (FLOAT, BOOL, CHAR) variable, backed by
+// a primitive array. Indexes are 0-based; callers check bounds with index().
+abstract class CfplArray {
+
+    static CfplArray of(TokenType type, int length) {
+        switch (type) {
+            case INT:
+                return new IntArray(new int[length]);
+            case FLOAT:
+                return new FloatArray(new double[length]);
+            case BOOL:
+                return new BoolArray(new boolean[length]);
+            case CHAR:
+                return new CharArray(blank(length));
+            default:
+                throw new IllegalArgumentException(type.toString());
+        }
+    }
+
+    // CHAR variables start out as ' ', so CHAR arrays do too.
+    private static char[] blank(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, ' ');
+        return chars;
+    }
+
+    abstract int length();
+
+    abstract Object get(int index);
+
+    // Returns false if the value has the wrong type for this array.
+    abstract boolean set(int index, Object value);
+
+    // Elements packed as in ValueType.bits, so reading one boxes nothing.
+    abstract ValueType element();
+
+    abstract long bits(int index);
+
+    abstract boolean set(int index, ValueType type, long bits);
+
+    abstract String typeName();
+
+    int index(Token where, Object index) {
+        if (!(index instanceof Integer))
+            throw new RuntimeError(where, "Array index must be an INT.");
+        return index(where, (int) index);
+    }
+
+    int index(Token where, int index) {
+        if (index < 0 || index >= length())
+            throw new RuntimeError(where, "Index " + index + " out of bounds for length " + length() + ".");
+        return index;
+    }
+
+    static final class IntArray extends CfplArray {
+        final int[] values;
+
+        IntArray(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        boolean set(int index, Object value) {
+            if (!(value instanceof Integer))
+                return false;
+            values[index] = (int) value;
+            return true;
+        }
+
+        @Override
+        ValueType element() {
+            return ValueType.INT;
+        }
+
+        @Override
+        long bits(int index) {
+            return values[index];
+        }
+
+        @Override
+        boolean set(int index, ValueType type, long bits) {
+            if (type != ValueType.INT)
+                return false;
+            values[index] = (int) bits;
+            return true;
+        }
+
+        @Override
+        String typeName() {
+            return "INT[]";
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    static final class FloatArray extends CfplArray {
+        final double[] values;
+
+        FloatArray(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return values[index];
+        }
+
+        // INT values are widened, as in a FLOAT declaration.
+        @Override
+        boolean set(int index, Object value) {
+            if (!Numeric.isNumber(value))
+                return false;
+            values[index] = ((Number) value).doubleValue();
+            return true;
+        }
+
+        @Override
+        ValueType element() {
+            return ValueType.FLOAT;
+        }
+
+        @Override
+        long bits(int index) {
+            return Double.doubleToRawLongBits(values[index]);
+        }
+
+        @Override
+        boolean set(int index, ValueType type, long bits) {
+            if (type == ValueType.FLOAT)
+                values[index] = Double.longBitsToDouble(bits);
+            else if (type == ValueType.INT)
+                values[index] = (int) bits;
+            else
+                return false;
+            return true;
+        }
+
+        @Override
+        String typeName() {
+            return "FLOAT[]";
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    static final class BoolArray extends CfplArray {
+        final boolean[] values;
+
+        BoolArray(boolean[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        boolean set(int index, Object value) {
+            if (!(value instanceof Boolean))
+                return false;
+            values[index] = (boolean) value;
+            return true;
+        }
+
+        @Override
+        ValueType element() {
+            return ValueType.BOOL;
+        }
+
+        @Override
+        long bits(int index) {
+            return values[index] ? 1 : 0;
+        }
+
+        @Override
+        boolean set(int index, ValueType type, long bits) {
+            if (type != ValueType.BOOL)
+                return false;
+            values[index] = bits != 0;
+            return true;
+        }
+
+        @Override
+        String typeName() {
+            return "BOOL[]";
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    static final class CharArray extends CfplArray {
+        final char[] values;
+
+        CharArray(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        boolean set(int index, Object value) {
+            if (!(value instanceof Character))
+                return false;
+            values[index] = (char) value;
+            return true;
+        }
+
+        @Override
+        ValueType element() {
+            return ValueType.CHAR;
+        }
+
+        @Override
+        long bits(int index) {
+            return values[index];
+        }
+
+        @Override
+        boolean set(int index, ValueType type, long bits) {
+            if (type != ValueType.CHAR)
+                return false;
+            values[index] = (char) bits;
+            return true;
+        }
+
+        @Override
+        String typeName() {
+            return "CHAR[]";
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a script on a {@link CfplServer}: {@code CfplClient [options] script}
+ * takes the same options as {@code CFPL script}, except those that write
+ * files. It prints what the script prints, feeds it stdin for INPUT: and
+ * exits with its status. Without a server listening, the script runs in this
+ * JVM as {@code CFPL} would run it.
+ */
+public final class CfplClient {
+
+    private CfplClient() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path socket = null;
+        List<String> forwarded = new ArrayList<>();
+        String script = null;
+        CFPL.Options options = new CFPL.Options();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--socket") && i + 1 < args.length) {
+                socket = Paths.get(args[++i]);
+                continue;
+            }
+            int last = CFPL.option(options, args, i);
+            if (last >= 0) {
+                forwarded.addAll(Arrays.asList(args).subList(i, last + 1));
+                i = last;
+            } else if (script == null && !args[i].startsWith("--")) {
+                script = args[i];
+            } else {
+                System.err.println("Usage: CfplClient [--socket path] [options] script");
+                System.exit(64);
+            }
+        }
+        if (script == null) {
+            System.err.println("Usage: CfplClient [--socket path] [options] script");
+            System.exit(64);
+        }
+        try {
+            if (socket == null)
+                socket = CfplProtocol.defaultSocket();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException noServer) {
+            forwarded.add(script);
+            CFPL.main(forwarded.toArray(new String[0]));
+            return;
+        }
+        System.exit(run(channel, forwarded, script));
+    }
+
+    private static int run(SocketChannel channel, List<String> args, String script) throws IOException {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (String arg : args)
+                CfplProtocol.write(out, CfplProtocol.ARG, arg.getBytes(Charset.defaultCharset()));
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(Paths.get(script).getFileName().toString().getBytes(Charset.defaultCharset()));
+            payload.write('\n');
+            payload.write(Files.readAllBytes(Paths.get(script)));
+            CfplProtocol.write(out, CfplProtocol.SCRIPT, payload.toByteArray());
+
+            BufferedReader stdin = null;
+            for (;;) {
+                CfplProtocol.Frame frame;
+                try {
+                    frame = CfplProtocol.read(in);
+                } catch (EOFException e) {
+                    System.err.println("The CFPL server closed the connection.");
+                    return 1;
+                }
+                switch (frame.type) {
+                    case CfplProtocol.OUT:
+                        System.out.write(frame.payload);
+                        System.out.flush();
+                        break;
+                    case CfplProtocol.ERR:
+                        System.err.write(frame.payload);
+                        System.err.flush();
+                        break;
+                    case CfplProtocol.READ:
+                        if (stdin == null)
+                            stdin = new BufferedReader(new InputStreamReader(System.in));
+                        String line = stdin.readLine();
+                        if (line == null)
+                            CfplProtocol.write(out, CfplProtocol.END, new byte[0]);
+                        else
+                            CfplProtocol.write(out, CfplProtocol.LINE, line.getBytes(Charset.defaultCharset()));
+                        break;
+                    case CfplProtocol.EXIT:
+                        return ByteBuffer.wrap(frame.payload).getInt();
+                    default:
+                        throw new IOException("Unexpected frame '" + (char) frame.type + "'.");
+                }
+            }
+        }
+    }
+}
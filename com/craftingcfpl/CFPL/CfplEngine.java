@@ -0,0 +1,93 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point for embedding CFPL. A compiled {@link CfplProgram} is immutable
+ * and can be executed any number of times, from any number of threads, each
+ * execution with its own {@link ExecutionContext}.
+ */
+public final class CfplEngine {
+
+    private CfplEngine() {
+    }
+
+    public static CfplProgram compile(String source) throws CompileError {
+        return compile("script", source, new Diagnostics());
+    }
+
+    public static CfplProgram compile(String source, Diagnostics diagnostics) throws CompileError {
+        return compile("script", source, diagnostics);
+    }
+
+    /**
+     * @param name how the script is called in diagnostics, JFR events and
+     *             reports, usually its file name
+     */
+    public static CfplProgram compile(String name, String source, Diagnostics diagnostics)
+            throws CompileError {
+        return compile(name, source, diagnostics, false);
+    }
+
+    /**
+     * @param optimize whether to remove constant branches, dead stores and
+     *                 unused variables, and evaluate repeated arithmetic once;
+     *                 {@link CfplProgram#optimizations()} lists the changes
+     */
+    public static CfplProgram compile(String name, String source, Diagnostics diagnostics,
+            boolean optimize) throws CompileError {
+        boolean events = CfplEvents.enabled();
+        CfplEvents.Scan scanEvent = null;
+        if (events) {
+            scanEvent = new CfplEvents.Scan();
+            scanEvent.begin();
+        }
+        long scanStart = System.nanoTime();
+        Scanner scanner = new Scanner(source, diagnostics);
+        List<Token> tokens = scanner.scanTokens();
+        long scanNanos = System.nanoTime() - scanStart;
+        CfplMetrics.INSTANCE.scanned(tokens.size(), scanNanos);
+        if (events) {
+            scanEvent.end();
+            if (scanEvent.shouldCommit()) {
+                scanEvent.script = name;
+                scanEvent.sourceLength = source.length();
+                scanEvent.tokens = tokens.size();
+                scanEvent.commit();
+            }
+        }
+
+        CfplEvents.Parse parseEvent = null;
+        if (events) {
+            parseEvent = new CfplEvents.Parse();
+            parseEvent.begin();
+        }
+        Parser parser = new Parser(tokens, diagnostics);
+        List<Stmt> statements = parser.parse();
+        if (events) {
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.script = name;
+                parseEvent.tokens = tokens.size();
+                parseEvent.statements = parser.statementCount;
+                parseEvent.failed = diagnostics.hadError();
+                parseEvent.commit();
+            }
+        }
+
+        // Stop if there was a syntax error.
+        if (diagnostics.hadError()) {
+            CfplMetrics.INSTANCE.compileFailed();
+            throw new CompileError(diagnostics.messages());
+        }
+
+        List<String> optimizations = new ArrayList<>();
+        int temporaries = 0;
+        if (optimize) {
+            optimizations.addAll(Optimizer.optimize(statements));
+            temporaries = CommonSubexpressions.eliminate(statements, optimizations);
+        }
+        return new CfplProgram(name, statements, parser.statementCount, optimizations, temporaries);
+    }
+}
@@ -0,0 +1,145 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+// Java Flight Recorder events for the scan, parse and execute phases.
+//
+// Loading the first event class starts up JFR's metadata, which takes longer
+// than a short script, so no event is created before Flight Recorder has been
+// initialized (-XX:StartFlightRecording, or JFR.start through jcmd).
+final class CfplEvents {
+
+    private CfplEvents() {
+    }
+
+    @Name("com.craftingcfpl.CFPL.Scan")
+    @Label("CFPL Scan")
+    @Category("CFPL")
+    @StackTrace(false)
+    static final class Scan extends Event {
+        @Label("Script")
+        String script;
+
+        @Label("Source Length")
+        int sourceLength;
+
+        @Label("Tokens")
+        int tokens;
+    }
+
+    @Name("com.craftingcfpl.CFPL.Parse")
+    @Label("CFPL Parse")
+    @Category("CFPL")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Script")
+        String script;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.craftingcfpl.CFPL.Execute")
+    @Label("CFPL Execute")
+    @Category("CFPL")
+    @StackTrace(false)
+    static final class Execute extends Event {
+        @Label("Script")
+        String script;
+
+        @Label("Statements Executed")
+        long statements;
+
+        @Label("Exit Status")
+        int status;
+    }
+
+    @Name("com.craftingcfpl.CFPL.ExecutionProgress")
+    @Label("CFPL Execution Progress")
+    @Description("Emitted periodically for every script that is still running")
+    @Category("CFPL")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class ExecutionProgress extends Event {
+        @Label("Script")
+        String script;
+
+        @Label("Thread")
+        String thread;
+
+        @Label("Running For (ms)")
+        long runningMillis;
+
+        @Label("Statements Executed")
+        long statements;
+    }
+
+    static final class Running {
+        final String script;
+        final Interpreter interpreter;
+        final Thread thread = Thread.currentThread();
+        final long start = System.nanoTime();
+
+        Running(String script, Interpreter interpreter) {
+            this.script = script;
+            this.interpreter = interpreter;
+        }
+    }
+
+    private static final Set<Running> running = ConcurrentHashMap.newKeySet();
+    private static volatile boolean progressAdded = false;
+
+    static boolean enabled() {
+        return FlightRecorder.isInitialized();
+    }
+
+    // ExecutionProgress events start with the first script run after JFR has
+    // been initialized, and cover every script running from then on.
+    static Running started(String script, Interpreter interpreter) {
+        if (!progressAdded && enabled())
+            addProgress();
+        Running execution = new Running(script, interpreter);
+        running.add(execution);
+        return execution;
+    }
+
+    private static synchronized void addProgress() {
+        if (!progressAdded) {
+            FlightRecorder.addPeriodicEvent(ExecutionProgress.class, CfplEvents::emitProgress);
+            progressAdded = true;
+        }
+    }
+
+    static void finished(Running execution) {
+        running.remove(execution);
+    }
+
+    private static void emitProgress() {
+        long now = System.nanoTime();
+        for (Running execution : running) {
+            ExecutionProgress event = new ExecutionProgress();
+            event.script = execution.script;
+            event.thread = execution.thread.getName();
+            event.runningMillis = (now - execution.start) / 1_000_000;
+            // Read racily from the executing thread; good enough for progress.
+            event.statements = execution.interpreter.statementsExecuted();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.craftingcfpl.CFPL;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Process-wide counters, published as com.craftingcfpl.CFPL:type=Metrics.
+// The rates are averages over the time spent scanning and executing.
+final class CfplMetrics implements CfplMetricsMBean {
+    static final String OBJECT_NAME = "com.craftingcfpl.CFPL:type=Metrics";
+    static final CfplMetrics INSTANCE = new CfplMetrics();
+
+    // Starting the platform MBean server loads all of JMX, which takes longer
+    // than a one-shot script; only a process still running a second after its
+    // first script gets the MBean, early enough for anyone to look at it.
+    private static final long PUBLISH_DELAY_MS = 1000;
+
+    static {
+        Thread publisher = new Thread(CfplMetrics::publish, "CFPL metrics publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    private static void publish() {
+        try {
+            Thread.sleep(PUBLISH_DELAY_MS);
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InterruptedException e) {
+            // Never published.
+        } catch (JMException | SecurityException e) {
+            // Already registered by another class loader, or not permitted.
+        }
+    }
+
+    private final LongAdder scriptsRun = new LongAdder();
+    private final LongAdder compileErrors = new LongAdder();
+    private final LongAdder runtimeErrors = new LongAdder();
+    private final LongAdder tokensScanned = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+    private final LongAdder statementsExecuted = new LongAdder();
+    private final LongAdder executeNanos = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+    private final LongAdder memoMisses = new LongAdder();
+
+    private CfplMetrics() {
+    }
+
+    void scanned(int tokens, long nanos) {
+        tokensScanned.add(tokens);
+        scanNanos.add(nanos);
+    }
+
+    void compileFailed() {
+        compileErrors.increment();
+    }
+
+    void executed(long statements, long nanos, int status) {
+        scriptsRun.increment();
+        statementsExecuted.add(statements);
+        executeNanos.add(nanos);
+        if (status == 70)
+            runtimeErrors.increment();
+    }
+
+    void memoized(long hits, long misses) {
+        memoHits.add(hits);
+        memoMisses.add(misses);
+    }
+
+    @Override
+    public long getScriptsRun() {
+        return scriptsRun.sum();
+    }
+
+    @Override
+    public long getCompileErrors() {
+        return compileErrors.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    @Override
+    public long getTokensScanned() {
+        return tokensScanned.sum();
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statementsExecuted.sum();
+    }
+
+    @Override
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    @Override
+    public long getMemoMisses() {
+        return memoMisses.sum();
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        return rate(tokensScanned.sum(), scanNanos.sum());
+    }
+
+    @Override
+    public double getStatementsPerSecond() {
+        return rate(statementsExecuted.sum(), executeNanos.sum());
+    }
+
+    private static double rate(long count, long nanos) {
+        return nanos == 0 ? 0.0 : count * 1e9 / nanos;
+    }
+}
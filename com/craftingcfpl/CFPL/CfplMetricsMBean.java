@@ -0,0 +1,21 @@
+package com.craftingcfpl.CFPL;
+
+public interface CfplMetricsMBean {
+    long getScriptsRun();
+
+    long getCompileErrors();
+
+    long getRuntimeErrors();
+
+    long getTokensScanned();
+
+    long getStatementsExecuted();
+
+    long getMemoHits();
+
+    long getMemoMisses();
+
+    double getTokensPerSecond();
+
+    double getStatementsPerSecond();
+}
@@ -0,0 +1,70 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class CfplProgram {
+    final String name;
+    final List<Stmt> statements;
+    final int statementCount;
+    final List<String> optimizations;
+    // Slots used by CacheStore and CacheLoad.
+    final int temporaries;
+
+    CfplProgram(String name, List<Stmt> statements, int statementCount, List<String> optimizations,
+            int temporaries) {
+        this.name = name;
+        this.statements = Collections.unmodifiableList(statements);
+        this.statementCount = statementCount;
+        this.optimizations = Collections.unmodifiableList(optimizations);
+        this.temporaries = temporaries;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** What the optimizer removed, one line per change; empty if it did not run. */
+    public List<String> optimizations() {
+        return optimizations;
+    }
+
+    /**
+     * Runs the program against a fresh global environment owned by the
+     * context and returns the exit status (0, 65 or 70).
+     */
+    public int execute(ExecutionContext context) {
+        context.begin();
+        Interpreter interpreter = context.listeners.isEmpty()
+                ? new Interpreter(context)
+                : new InstrumentedInterpreter(context, context.listeners);
+
+        CfplEvents.Execute event = CfplEvents.enabled() ? new CfplEvents.Execute() : null;
+        CfplEvents.Running running = CfplEvents.started(name, interpreter);
+        long nanos;
+        if (event != null)
+            event.begin();
+        long start = System.nanoTime();
+        try {
+            interpreter.interpret(statements, temporaries);
+            context.out.flush();
+        } finally {
+            if (event != null)
+                event.end();
+            nanos = System.nanoTime() - start;
+            CfplEvents.finished(running);
+        }
+
+        int status = context.diagnostics.exitStatus();
+        long statements = interpreter.statementsExecuted();
+        CfplMetrics.INSTANCE.executed(statements, nanos, status);
+        CfplMetrics.INSTANCE.memoized(interpreter.memoHits(), interpreter.memoMisses());
+        if (event != null && event.shouldCommit()) {
+            event.script = name;
+            event.statements = statements;
+            event.status = status;
+            event.commit();
+        }
+        return status;
+    }
+}
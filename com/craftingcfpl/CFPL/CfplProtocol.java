@@ -0,0 +1,107 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+// What CfplClient and CfplServer send each other over the socket. Every
+// frame is a type byte, an int length and that many bytes of payload.
+//
+// The client sends an ARG frame per command line option, then SCRIPT. The
+// server answers with OUT and ERR frames as the script writes them, a READ
+// frame whenever INPUT: needs a line, and EXIT last. The client answers
+// every READ with LINE or, once its stdin has ended, END.
+final class CfplProtocol {
+    // Client to server.
+    static final byte ARG = 'a';
+    // The script's file name, a newline, then its bytes.
+    static final byte SCRIPT = 's';
+    static final byte LINE = 'l';
+    static final byte END = 'e';
+
+    // Server to client.
+    static final byte OUT = 'O';
+    static final byte ERR = 'E';
+    static final byte READ = 'R';
+    // The exit status as an int.
+    static final byte EXIT = 'X';
+
+    private CfplProtocol() {
+    }
+
+    static final Set<PosixFilePermission> OWNER_ONLY =
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY =
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE,
+                    PosixFilePermission.OWNER_EXECUTE);
+
+    // Whoever can connect to the socket gets the scripts and input sent to
+    // it, so it lives in a directory only its user can enter:
+    // $XDG_RUNTIME_DIR, or cfpl-<user> in java.io.tmpdir. Anybody could
+    // have made the latter first, so either is checked before it is used.
+    static Path defaultSocket() throws IOException {
+        String user = System.getProperty("user.name");
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path directory;
+        if (runtime != null && !runtime.isEmpty()) {
+            directory = Paths.get(runtime);
+        } else {
+            directory = Paths.get(System.getProperty("java.io.tmpdir"), "cfpl-" + user);
+            try {
+                Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            } catch (FileAlreadyExistsException e) {
+                // Checked below like any other.
+            }
+        }
+        PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory() || !attributes.owner().getName().equals(user)
+                || !OWNER_ONLY_DIRECTORY.containsAll(attributes.permissions()))
+            throw new IOException(directory + " is not a directory only " + user + " can use.");
+        return directory.resolve("cfpl.sock");
+    }
+
+    static final class Frame {
+        final byte type;
+        final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    // Throws EOFException if the other side has closed the socket.
+    static Frame read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("Bad frame length " + length + ".");
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    static void write(DataOutputStream out, byte type, byte[] payload, int offset, int length) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(length);
+            out.write(payload, offset, length);
+            out.flush();
+        }
+    }
+
+    static void write(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        write(out, type, payload, 0, payload.length);
+    }
+}
@@ -0,0 +1,210 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-running interpreter that takes scripts from {@link CfplClient} over a
+ * Unix domain socket, so scripts run in a JVM whose scanner, parser and
+ * interpreter are already loaded and compiled. Every connection is one script
+ * with its own {@link ExecutionContext}; its output, errors and input travel
+ * over the socket as described in {@link CfplProtocol}.
+ */
+public final class CfplServer {
+
+    private CfplServer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path socket = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--socket") && i + 1 < args.length) {
+                socket = Paths.get(args[++i]);
+            } else {
+                System.err.println("Usage: CfplServer [--socket path]");
+                System.exit(64);
+            }
+        }
+        try {
+            if (socket == null)
+                socket = CfplProtocol.defaultSocket();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        serve(socket);
+    }
+
+    static void serve(Path socket) throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        // A socket file nobody listens on is left over from a server that
+        // was killed; one somebody listens on belongs to a running server.
+        if (Files.exists(socket)) {
+            try {
+                SocketChannel.open(address).close();
+                System.err.println("A CFPL server is already listening on " + socket + ".");
+                System.exit(1);
+            } catch (IOException stale) {
+                Files.delete(socket);
+            }
+        }
+
+        ExecutorService jobs = Executors.newCachedThreadPool();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            // Not left to the umask: connecting takes write permission.
+            Files.setPosixFilePermissions(socket, CfplProtocol.OWNER_ONLY);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // The next server removes it.
+                }
+            }));
+            System.err.println("CFPL server listening on " + socket);
+            for (;;) {
+                SocketChannel channel = server.accept();
+                jobs.execute(() -> new Job(channel).run());
+            }
+        }
+    }
+
+    // One connection: reads the options and the script, runs it and reports
+    // its exit status.
+    private static final class Job {
+        private final SocketChannel channel;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Job(SocketChannel channel) {
+            this.channel = channel;
+            this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        }
+
+        void run() {
+            try (channel) {
+                PrintStream stdout = new PrintStream(new BufferedOutputStream(new FrameStream(CfplProtocol.OUT)), true);
+                PrintStream stderr = new PrintStream(new BufferedOutputStream(new FrameStream(CfplProtocol.ERR)), true);
+                int status;
+                try {
+                    status = execute(stdout, stderr);
+                } catch (UncheckedIOException e) {
+                    throw e;
+                } catch (RuntimeException | Error e) {
+                    // What an uncaught exception would do to java CFPL.
+                    stderr.print("Exception in thread \"main\" ");
+                    e.printStackTrace(stderr);
+                    status = 1;
+                }
+                stdout.flush();
+                stderr.flush();
+                CfplProtocol.write(out, CfplProtocol.EXIT, ByteBuffer.allocate(4).putInt(status).array());
+            } catch (IOException | UncheckedIOException e) {
+                // The client went away; nobody is left to tell.
+            }
+        }
+
+        private int execute(PrintStream stdout, PrintStream stderr) throws IOException {
+            List<String> args = new ArrayList<>();
+            CfplProtocol.Frame frame = CfplProtocol.read(in);
+            while (frame.type == CfplProtocol.ARG) {
+                args.add(new String(frame.payload, Charset.defaultCharset()));
+                frame = CfplProtocol.read(in);
+            }
+            if (frame.type != CfplProtocol.SCRIPT)
+                throw new IOException("Expected a script.");
+
+            CFPL.Options options = new CFPL.Options();
+            String[] array = args.toArray(new String[0]);
+            for (int i = 0; i < array.length; i++) {
+                int last = CFPL.option(options, array, i);
+                if (last < 0 || options.profile || options.coverage || options.memoStats
+                        || options.recordInput != null || options.replayInput != null) {
+                    stderr.println("The CFPL server does not take " + array[i] + ".");
+                    return 64;
+                }
+                i = last;
+            }
+
+            byte[] script = frame.payload;
+            int newline = 0;
+            while (newline < script.length && script[newline] != '\n')
+                newline++;
+            String name = new String(script, 0, newline, Charset.defaultCharset());
+            String source = new String(Arrays.copyOfRange(script, Math.min(newline + 1, script.length), script.length),
+                    Charset.defaultCharset());
+            ExecutionContext context = new ExecutionContext(new RemoteInput(), stdout, stderr);
+            return CFPL.run(name, source, context, options, stderr);
+        }
+
+        // Sends what is written as frames of one type. Once the client has
+        // gone, the script is stopped at its next write: PrintStream would
+        // swallow an IOException and let it run on.
+        private final class FrameStream extends OutputStream {
+            private final byte type;
+
+            FrameStream(byte type) {
+                this.type = type;
+            }
+
+            @Override
+            public void write(int b) {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                try {
+                    CfplProtocol.write(out, type, bytes, offset, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        // INPUT: lines come from the client's stdin, one READ at a time.
+        private final class RemoteInput implements InputSource {
+            @Override
+            public String readLine() throws IOException {
+                CfplProtocol.write(out, CfplProtocol.READ, new byte[0]);
+                CfplProtocol.Frame frame;
+                try {
+                    frame = CfplProtocol.read(in);
+                } catch (EOFException e) {
+                    return null;
+                }
+                if (frame.type != CfplProtocol.LINE)
+                    return null;
+                return new String(frame.payload, Charset.defaultCharset());
+            }
+
+            @Override
+            public boolean prompts() {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * cfplc: compiles a script ahead of time into an executable JAR that runs
+ * without the interpreter. The script is translated to Java by
+ * {@link JavaGenerator}, compiled in memory with the JDK's compiler and packed
+ * together with {@link CompiledRuntime} and the classes it needs.
+ */
+public final class Cfplc {
+    private static final String PACKAGE = "com/craftingcfpl/CFPL/";
+    // Classes a compiled program uses, with their nested classes.
+    private static final List<String> RUNTIME = Arrays.asList(
+            "CompiledRuntime", "Diagnostics", "RuntimeError", "Token", "TokenType", "InputValues",
+            "CfplArray", "Numeric", "Builtins", "ArrayOps", "ScalarArrayOps", "VectorArrayOps", "MemoCache");
+
+    private Cfplc() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path output = null;
+        boolean java = false;
+        Path script = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else if (args[i].equals("--java")) {
+                java = true;
+            } else if (script == null) {
+                script = Paths.get(args[i]);
+            } else {
+                script = null;
+                break;
+            }
+        }
+        if (script == null) {
+            System.out.println("Usage: cfplc [-o output.jar] [--java] script.cfpl");
+            System.exit(64);
+        }
+
+        String name = script.getFileName().toString();
+        if (output == null)
+            output = script.resolveSibling(name.replaceFirst("\\.cfpl$", "") + ".jar");
+        Diagnostics diagnostics = new Diagnostics(System.err);
+        String source;
+        try {
+            source = translate(name, new String(Files.readAllBytes(script), Charset.defaultCharset()), diagnostics);
+        } catch (CompileError error) {
+            System.exit(diagnostics.exitStatus());
+            return;
+        }
+        if (java) {
+            System.out.print(source);
+            return;
+        }
+
+        StringWriter errors = new StringWriter();
+        Map<String, byte[]> classes = compile(source, errors);
+        if (classes == null) {
+            System.err.print(errors);
+            System.exit(70);
+        }
+        writeJar(output, classes);
+        System.err.println("Executable JAR written to " + output);
+    }
+
+    /**
+     * The Java source of the class that runs the script.
+     *
+     * @throws CompileError if the script does not parse, or does not type
+     *                      check well enough to be given Java types
+     */
+    static String translate(String name, String source, Diagnostics diagnostics) throws CompileError {
+        CfplProgram program = CfplEngine.compile(name, source, diagnostics);
+        String java = new JavaGenerator(diagnostics).generate(program.statements);
+        if (java == null)
+            throw new CompileError(diagnostics.messages());
+        return java;
+    }
+
+    /**
+     * Compiles the source of {@link JavaGenerator#CLASS_NAME} against the
+     * classes of this one and returns the class files by binary name, or
+     * null after writing javac's errors.
+     */
+    static Map<String, byte[]> compile(String source, StringWriter errors) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null)
+            throw new IllegalStateException("cfplc needs a JDK, this Java runtime has no compiler.");
+
+        Map<String, ByteArrayOutputStream> outputs = new TreeMap<>();
+        StandardJavaFileManager files = javac.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        JavaFileManager manager = new ForwardingJavaFileManager<JavaFileManager>(files) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                    JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("memory:///" + className.replace('.', '/')
+                        + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        outputs.put(className, bytes);
+                        return bytes;
+                    }
+                };
+            }
+        };
+        JavaFileObject unit = new SimpleJavaFileObject(URI.create("memory:///" + PACKAGE
+                + JavaGenerator.CLASS_NAME + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        List<String> options = Arrays.asList("-classpath", classPath().toString(), "-proc:none", "-nowarn");
+        if (!javac.getTask(errors, manager, null, options, null, Collections.singletonList(unit)).call())
+            return null;
+        Map<String, byte[]> classes = new TreeMap<>();
+        outputs.forEach((name, bytes) -> classes.put(name, bytes.toByteArray()));
+        return classes;
+    }
+
+    // The directory or JAR these classes were loaded from.
+    private static Path classPath() {
+        try {
+            return Paths.get(Cfplc.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void writeJar(Path output, Map<String, byte[]> classes) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(Attributes.Name.MAIN_CLASS, PACKAGE.replace('/', '.') + JavaGenerator.CLASS_NAME);
+
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(output), manifest)) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet())
+                write(jar, entry.getKey().replace('.', '/') + ".class", entry.getValue());
+            for (Map.Entry<String, byte[]> entry : runtimeClasses().entrySet())
+                write(jar, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void write(JarOutputStream jar, String name, byte[] bytes) throws IOException {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(bytes);
+        jar.closeEntry();
+    }
+
+    // The RUNTIME class files by entry name, read from where this class came from.
+    private static Map<String, byte[]> runtimeClasses() throws IOException {
+        Map<String, byte[]> classes = new TreeMap<>();
+        Path path = classPath();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> entries = Files.list(path.resolve(PACKAGE))) {
+                for (Path entry : (Iterable<Path>) entries::iterator) {
+                    String name = PACKAGE + entry.getFileName();
+                    if (isRuntime(name))
+                        classes.put(name, Files.readAllBytes(entry));
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(path.toFile())) {
+                for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                    JarEntry entry = entries.nextElement();
+                    if (isRuntime(entry.getName())) {
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            classes.put(entry.getName(), in.readAllBytes());
+                        }
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static boolean isRuntime(String entry) {
+        if (!entry.startsWith(PACKAGE) || !entry.endsWith(".class"))
+            return false;
+        String name = entry.substring(PACKAGE.length(), entry.length() - ".class".length());
+        int nested = name.indexOf('$');
+        return RUNTIME.contains(nested < 0 ? name : name.substring(0, nested));
+    }
+}
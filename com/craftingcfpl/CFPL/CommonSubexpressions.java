@@ -0,0 +1,293 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Evaluates repeated arithmetic once per basic block. A basic block is a run
+// of statements in one list up to the next IF, WHILE, block or loop (an IF's
+// condition still belongs to it). Within it, identical Binary and Unary trees
+// over variables and literals are numbered by value: every variable in the
+// key carries a version that each store, VAR and INPUT: to that name bumps,
+// and a call to a user function bumps all of them. The first evaluation of a
+// value that occurs again becomes a CacheStore into a temporary slot, the
+// later ones CacheLoads. Runs after Optimizer, only with --optimize.
+final class CommonSubexpressions {
+    private final List<String> report;
+    private int temporaries = 0;
+
+    // Per basic block: versions of names, and an epoch for user calls.
+    private final Map<String, Integer> versions = new HashMap<>();
+    private int epoch = 0;
+    // Occurrences of each value key, and during the rewrite, the slot given to it.
+    private Map<String, Integer> counts = new HashMap<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private boolean rewriting;
+    // False inside the right operand of AND/OR, which may not run.
+    private boolean definite = true;
+
+    private CommonSubexpressions(List<String> report) {
+        this.report = report;
+    }
+
+    // Rewrites statements in place; returns how many temporary slots the program needs.
+    static int eliminate(List<Stmt> statements, List<String> report) {
+        CommonSubexpressions cse = new CommonSubexpressions(report);
+        List<List<Stmt>> lists = new ArrayList<>();
+        lists.add(statements);
+        for (Stmt statement : statements)
+            Optimizer.collectLists(statement, lists);
+        for (List<Stmt> list : lists)
+            cse.blocks(list);
+        return cse.temporaries;
+    }
+
+    private void blocks(List<Stmt> statements) {
+        int start = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            if (stmt instanceof Stmt.If || !straight(stmt)) {
+                block(statements, start, stmt instanceof Stmt.If ? i + 1 : i);
+                start = i + 1;
+            }
+        }
+        block(statements, start, statements.size());
+    }
+
+    private static boolean straight(Stmt stmt) {
+        return stmt instanceof Stmt.Expression || stmt instanceof Stmt.Print
+                || stmt instanceof Stmt.Var || stmt instanceof Stmt.Input
+                || stmt instanceof Stmt.Return;
+    }
+
+    // Statements from..to-1 form one basic block.
+    private void block(List<Stmt> statements, int from, int to) {
+        if (to - from < 1)
+            return;
+        counts = new HashMap<>();
+        rewriting = false;
+        walk(statements, from, to);
+        if (counts.values().stream().noneMatch(count -> count > 1))
+            return;
+        slots.clear();
+        rewriting = true;
+        walk(statements, from, to);
+    }
+
+    private void walk(List<Stmt> statements, int from, int to) {
+        versions.clear();
+        epoch = 0;
+        for (int i = from; i < to; i++) {
+            Stmt stmt = statements.get(i);
+            Stmt rewritten = statement(stmt);
+            if (rewriting && rewritten != stmt) {
+                rewritten.line = stmt.line;
+                rewritten.index = stmt.index;
+                statements.set(i, rewritten);
+            }
+        }
+    }
+
+    private Stmt statement(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression) {
+            Expr expression = ((Stmt.Expression) stmt).expression;
+            Expr rewritten = expr(expression);
+            return rewritten == expression ? stmt : new Stmt.Expression(rewritten);
+        }
+        if (stmt instanceof Stmt.Print) {
+            Expr expression = ((Stmt.Print) stmt).expression;
+            Expr rewritten = expr(expression);
+            return rewritten == expression ? stmt : new Stmt.Print(rewritten);
+        }
+        if (stmt instanceof Stmt.Var) {
+            Stmt.Var var = (Stmt.Var) stmt;
+            Expr initializer = var.initializer == null ? null : expr(var.initializer);
+            Expr size = var.size == null ? null : expr(var.size);
+            kill(var.name.lexeme);
+            if (initializer == var.initializer && size == var.size)
+                return stmt;
+            Stmt.Var copy = new Stmt.Var(var.name, initializer, var.dataType);
+            copy.setSize(size);
+            copy.slot = var.slot;
+            return copy;
+        }
+        if (stmt instanceof Stmt.Input) {
+            for (Token token : ((Stmt.Input) stmt).tokens)
+                kill(token.lexeme);
+            return stmt;
+        }
+        if (stmt instanceof Stmt.Return) {
+            Stmt.Return ret = (Stmt.Return) stmt;
+            Expr value = ret.value == null ? null : expr(ret.value);
+            return value == ret.value ? stmt : new Stmt.Return(ret.keyword, value);
+        }
+        if (stmt instanceof Stmt.If) {
+            Stmt.If ifStmt = (Stmt.If) stmt;
+            Expr condition = expr(ifStmt.condition);
+            return condition == ifStmt.condition ? stmt
+                    : new Stmt.If(condition, ifStmt.thenBranch, ifStmt.elseBranch);
+        }
+        return stmt;
+    }
+
+    private void kill(String name) {
+        versions.merge(name, 1, Integer::sum);
+    }
+
+    // Walks expr in evaluation order. While counting it returns expr; while
+    // rewriting, a copy wherever something below changed.
+    private Expr expr(Expr expr) {
+        String key = definite ? key(expr) : null;
+        if (key != null) {
+            int seen = rewriting ? 0 : counts.merge(key, 1, Integer::sum);
+            if (!rewriting && seen > 1)
+                return expr;
+            if (rewriting && counts.get(key) > 1) {
+                Integer slot = slots.get(key);
+                if (slot != null)
+                    return new Expr.CacheLoad(slot);
+                slot = temporaries++;
+                slots.put(key, slot);
+                report.add("line " + line(expr) + ": evaluating " + show(expr) + " once for "
+                        + counts.get(key) + " uses");
+                return new Expr.CacheStore(slot, children(expr));
+            }
+        }
+        return children(expr);
+    }
+
+    private Expr children(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            Expr left = expr(binary.left);
+            Expr right = expr(binary.right);
+            return left == binary.left && right == binary.right ? expr
+                    : new Expr.Binary(left, binary.operator, right);
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            Expr right = expr(unary.right);
+            return right == unary.right ? expr : new Expr.Unary(unary.operator, right);
+        }
+        if (expr instanceof Expr.Grouping) {
+            Expr inner = ((Expr.Grouping) expr).expression;
+            Expr rewritten = expr(inner);
+            return rewritten == inner ? expr : new Expr.Grouping(rewritten);
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical) expr;
+            Expr left = expr(logical.left);
+            boolean outer = definite;
+            definite = false;
+            expr(logical.right);
+            definite = outer;
+            return left == logical.left ? expr : new Expr.Logical(left, logical.operator, logical.right);
+        }
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign) expr;
+            Expr value = expr(assign.value);
+            kill(assign.name.lexeme);
+            if (value == assign.value)
+                return expr;
+            Expr.Assign copy = new Expr.Assign(assign.name, value);
+            copy.slot = assign.slot;
+            return copy;
+        }
+        if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call) expr;
+            List<Expr> arguments = new ArrayList<>(call.arguments.size());
+            boolean changed = false;
+            for (Expr argument : call.arguments) {
+                Expr rewritten = expr(argument);
+                changed |= rewritten != argument;
+                arguments.add(rewritten);
+            }
+            // A user function may store to any top-level variable.
+            if (!Builtins.isBuiltin(call.name.lexeme))
+                epoch++;
+            return changed ? new Expr.Call(call.name, arguments) : expr;
+        }
+        if (expr instanceof Expr.Index) {
+            Expr.Index index = (Expr.Index) expr;
+            Expr array = expr(index.array);
+            Expr position = expr(index.index);
+            return array == index.array && position == index.index ? expr
+                    : new Expr.Index(array, index.bracket, position);
+        }
+        if (expr instanceof Expr.IndexAssign) {
+            Expr.IndexAssign assign = (Expr.IndexAssign) expr;
+            Expr array = expr(assign.array);
+            Expr position = expr(assign.index);
+            Expr value = expr(assign.value);
+            return array == assign.array && position == assign.index && value == assign.value ? expr
+                    : new Expr.IndexAssign(array, assign.bracket, position, value);
+        }
+        return expr;
+    }
+
+    // The value number of a side-effect free Binary or Unary, or null if expr
+    // is not worth caching or could change between two evaluations.
+    private String key(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            String left = operand(binary.left);
+            String right = operand(binary.right);
+            return left == null || right == null ? null
+                    : "(" + binary.operator.type + " " + left + " " + right + ")";
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            if (unary.right instanceof Expr.Literal)
+                return null;
+            String right = operand(unary.right);
+            return right == null ? null : "(" + unary.operator.type + " " + right + ")";
+        }
+        return null;
+    }
+
+    private String operand(Expr expr) {
+        if (expr instanceof Expr.Grouping)
+            return operand(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            if (value == null)
+                return "nil";
+            String text = value.toString();
+            return value.getClass().getSimpleName() + ":" + text.length() + ":" + text;
+        }
+        if (expr instanceof Expr.Variable) {
+            String name = ((Expr.Variable) expr).name.lexeme;
+            return name + "#" + versions.getOrDefault(name, 0) + "@" + epoch;
+        }
+        return key(expr);
+    }
+
+    private static int line(Expr expr) {
+        if (expr instanceof Expr.Binary)
+            return ((Expr.Binary) expr).operator.line;
+        if (expr instanceof Expr.Unary)
+            return ((Expr.Unary) expr).operator.line;
+        return 0;
+    }
+
+    private static String show(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            return show(binary.left) + " " + binary.operator.lexeme + " " + show(binary.right);
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            return unary.operator.lexeme + " " + show(unary.right);
+        }
+        if (expr instanceof Expr.Grouping)
+            return "(" + show(((Expr.Grouping) expr).expression) + ")";
+        if (expr instanceof Expr.Variable)
+            return ((Expr.Variable) expr).name.lexeme;
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+        }
+        return "...";
+    }
+}
@@ -0,0 +1,18 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.List;
+
+public class CompileError extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> errors;
+
+    CompileError(List<String> errors) {
+        super(String.join("\n", errors));
+        this.errors = errors;
+    }
+
+    public List<String> errors() {
+        return errors;
+    }
+}
@@ -0,0 +1,114 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// What programs compiled by cfplc call at run time. cfplc copies it into
+// every JAR it writes, with the interpreter classes it uses. Errors carry the
+// same messages, and are reported at the same tokens, as in Interpreter.
+final class CompiledRuntime {
+    private static final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+    private CompiledRuntime() {
+    }
+
+    // System.out without its flush after every line; run() and readLine()
+    // flush it.
+    static PrintStream output() {
+        return new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+    }
+
+    // Runs the program and exits with the interpreter's status if it is not 0.
+    static void run(Runnable program, PrintStream out, Diagnostics diagnostics) {
+        try {
+            program.run();
+        } catch (RuntimeError error) {
+            out.flush();
+            diagnostics.runtimeError(error);
+        }
+        out.flush();
+        int status = diagnostics.exitStatus();
+        if (status != 0)
+            System.exit(status);
+    }
+
+    // The "[Input]" prompt has to be out before the program waits.
+    static String readLine(PrintStream out) throws IOException {
+        out.flush();
+        return in.readLine();
+    }
+
+    // A converted INPUT: value, with Environment.assign's type check.
+    static Object input(Diagnostics diagnostics, Token name, Object current, String value) {
+        Object converted = InputValues.convert(diagnostics, name, current, value);
+        if (converted != null && current.getClass() != converted.getClass()) {
+            throw new RuntimeError(name, name.lexeme + " expects " + current.getClass().getSimpleName()
+                    + " but received " + converted.getClass().getSimpleName() + " instead.");
+        }
+        return converted;
+    }
+
+    static int divide(Token operator, int left, int right) {
+        if (right == 0)
+            throw new RuntimeError(operator, "Division by zero.");
+        return left / right;
+    }
+
+    static int modulo(Token operator, int left, int right) {
+        if (right == 0)
+            throw new RuntimeError(operator, "Division by zero.");
+        return left % right;
+    }
+
+    // Double.equals: NaN equals itself, 0.0 does not equal -0.0.
+    static boolean sameFloat(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    static boolean isEqual(Object left, Object right) {
+        return left.equals(right);
+    }
+
+    static boolean isTruthy(Object value) {
+        if (value instanceof Boolean)
+            return (boolean) value;
+        return value != null;
+    }
+
+    static void discard(Object value) {
+    }
+
+    static CfplArray array(Token name, TokenType type, int size) {
+        if (size < 0)
+            throw new RuntimeError(name, "Array size must be a non-negative INT.");
+        return CfplArray.of(type, size);
+    }
+
+    static int index(Token bracket, CfplArray array, int index) {
+        return array.index(bracket, index);
+    }
+
+    // xs[i] = n for a FLOAT array and an INT n, which stays the value.
+    static int store(double[] values, int index, int value) {
+        values[index] = value;
+        return value;
+    }
+
+    static Object call(Token name, Object... arguments) {
+        return Builtins.call(name, Arrays.asList(arguments));
+    }
+
+    static RuntimeError noReturn(Token function) {
+        return new RuntimeError(function, function.lexeme + " ended without RETURN.");
+    }
+
+    static RuntimeError stackOverflow(Token site) {
+        return new RuntimeError(site, "Stack overflow.");
+    }
+}
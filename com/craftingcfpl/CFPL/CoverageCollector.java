@@ -0,0 +1,146 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Statement coverage (CFPL --coverage). A hit only sets the statement's bit,
+// so collecting allocates nothing; the report is built from the AST later.
+class CoverageCollector implements ExecutionListener {
+    private final CfplProgram program;
+    private final long[] hits;
+
+    CoverageCollector(CfplProgram program) {
+        this.program = program;
+        this.hits = new long[(program.statementCount + 63) >>> 6];
+    }
+
+    @Override
+    public void beforeStatement(Stmt stmt) {
+        hits[stmt.index >>> 6] |= 1L << stmt.index;
+    }
+
+    boolean hit(Stmt stmt) {
+        return (hits[stmt.index >>> 6] & (1L << stmt.index)) != 0;
+    }
+
+    // LCOV tracefile: DA per line, BRDA for the arms of every IF and WHILE.
+    void writeLcov(Writer writer, String sourceFile) throws IOException {
+        Report report = new Report();
+        for (Stmt stmt : program.statements)
+            report.visit(stmt);
+
+        writer.write("TN:\n");
+        writer.write("SF:" + sourceFile + "\n");
+        int linesHit = 0;
+        for (Map.Entry<Integer, Boolean> line : report.lines.entrySet()) {
+            writer.write("DA:" + line.getKey() + "," + (line.getValue() ? 1 : 0) + "\n");
+            if (line.getValue())
+                linesHit++;
+        }
+        writer.write(report.branches.toString());
+        writer.write("BRF:" + report.branchesFound + "\n");
+        writer.write("BRH:" + report.branchesHit + "\n");
+        writer.write("LF:" + report.lines.size() + "\n");
+        writer.write("LH:" + linesHit + "\n");
+        writer.write("end_of_record\n");
+    }
+
+    private class Report implements Stmt.Visitor<Void> {
+        final Map<Integer, Boolean> lines = new TreeMap<>();
+        final StringBuilder branches = new StringBuilder();
+        int branchesFound = 0;
+        int branchesHit = 0;
+
+        void visit(Stmt stmt) {
+            if (stmt == null)
+                return;
+            lines.merge(stmt.line, hit(stmt), Boolean::logicalOr);
+            stmt.accept(this);
+        }
+
+        void branch(Stmt owner, int number, Stmt arm) {
+            branchesFound++;
+            String taken = "-";
+            if (hit(owner)) {
+                taken = hit(arm) ? "1" : "0";
+                if (hit(arm))
+                    branchesHit++;
+            }
+            branches.append("BRDA:").append(owner.line).append(',').append(owner.index)
+                    .append(',').append(number).append(',').append(taken).append('\n');
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            branch(stmt, 0, stmt.thenBranch);
+            visit(stmt.thenBranch);
+            if (stmt.elseBranch != null) {
+                branch(stmt, 1, stmt.elseBranch);
+                visit(stmt.elseBranch);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            branch(stmt, 0, stmt.body);
+            visit(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+            visit(stmt.sequential);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            for (Stmt.Var local : stmt.locals)
+                visit(local);
+            visit(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            return null;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            for (Stmt statement : stmt.statements)
+                visit(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitExecutableStmt(Stmt.Executable stmt) {
+            for (Stmt statement : stmt.statements)
+                visit(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            return null;
+        }
+
+        @Override
+        public Void visitInputStmt(Stmt.Input stmt) {
+            return null;
+        }
+    }
+}
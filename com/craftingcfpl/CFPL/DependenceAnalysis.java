@@ -0,0 +1,491 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.craftingcfpl.CFPL.TokenType.*;
+
+// Decides whether the iterations of a PARALLEL FOR are independent. The loop
+// has to be FOR (VAR i = a AS INT; i < n; i = i + 1) (or i <= n) and its body
+// may only write variables it declares itself, elements xs[i] of arrays it
+// reads at no other index, and reductions:
+//   s = s + e, s = e + s, s = s - e                    sum
+//   IF (e < m) m = e,  IF (m > e) m = e                min (max with > / <)
+// where s and m are read nowhere else in the body. Any other shared write,
+// INPUT:, or a bound that the body could change leaves serialReason set.
+final class DependenceAnalysis {
+
+    enum Kind {
+        SUM, MIN, MAX
+    }
+
+    static final class Reduction {
+        final Token name;
+        final Kind kind;
+
+        Reduction(Token name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        // What a chunk starts from, or null if the variable holds no number.
+        Object identity(Object current) {
+            if (!Numeric.isNumber(current))
+                return null;
+            if (kind != Kind.SUM)
+                return current;
+            return current instanceof Integer ? (Object) 0 : (Object) 0.0;
+        }
+
+        Object combine(Object total, Object partial) {
+            switch (kind) {
+                case SUM:
+                    return Numeric.add(name, total, partial);
+                case MIN:
+                    return Numeric.less(name, partial, total) ? partial : total;
+                default:
+                    return Numeric.greater(name, partial, total) ? partial : total;
+            }
+        }
+    }
+
+    private DependenceAnalysis() {
+    }
+
+    static void analyze(Stmt.ParallelFor loop) {
+        loop.serialReason = check(loop);
+        if (loop.reductions == null)
+            loop.reductions = new ArrayList<>();
+    }
+
+    private static String check(Stmt.ParallelFor loop) {
+        if (!(loop.initializer instanceof Stmt.Var))
+            return "the loop variable is not declared in the FOR header";
+        Stmt.Var variable = (Stmt.Var) loop.initializer;
+        if (variable.dataType.type != INT || variable.initializer == null)
+            return "the loop variable is not an initialized INT";
+        String index = variable.name.lexeme;
+        loop.variable = variable;
+
+        if (!bound(loop, index))
+            return "the condition is not " + index + " < n or " + index + " <= n";
+        if (!increment(loop.increment, index))
+            return "the increment is not " + index + " = " + index + " + 1";
+
+        Effects start = new Effects(index);
+        start.visit(variable.initializer);
+        Effects limit = new Effects(index);
+        limit.visit(loop.limit);
+        if (!start.writes.isEmpty() || !limit.writes.isEmpty())
+            return "the loop header assigns a variable";
+        if (limit.reads.containsKey(index))
+            return "the bound depends on " + index;
+
+        Effects body = new Effects(index);
+        body.visit(loop.body);
+        if (body.input)
+            return "the body reads INPUT:";
+        if (start.call != null || limit.call != null || body.call != null)
+            return "the loop calls " + (body.call != null ? body.call : start.call != null ? start.call : limit.call);
+        if (!start.elementWrites.isEmpty() || !limit.elementWrites.isEmpty())
+            return "the loop header assigns an array element";
+
+        for (String name : body.writes) {
+            if (name.equals(index))
+                return "the body assigns " + index;
+            return "the body writes the shared variable " + name;
+        }
+        for (String name : body.elementWrites) {
+            if (body.reads.containsKey(name))
+                return name + " is read at an index other than " + index;
+        }
+
+        List<Reduction> reductions = new ArrayList<>();
+        for (Map.Entry<String, List<Reduction>> entry : body.reductions.entrySet()) {
+            String name = entry.getKey();
+            if (name.equals(index))
+                return "the body assigns " + index;
+            if (body.reads.containsKey(name) || limit.reads.containsKey(name))
+                return name + " is read outside its reduction";
+            Kind kind = entry.getValue().get(0).kind;
+            for (Reduction reduction : entry.getValue()) {
+                if (reduction.kind != kind)
+                    return name + " is reduced in more than one way";
+            }
+            reductions.add(entry.getValue().get(0));
+        }
+        loop.reductions = reductions;
+        return null;
+    }
+
+    private static boolean bound(Stmt.ParallelFor loop, String index) {
+        if (!(loop.condition instanceof Expr.Binary))
+            return false;
+        Expr.Binary condition = (Expr.Binary) loop.condition;
+        TokenType op = condition.operator.type;
+        if ((op == LESS || op == LESS_EQUAL) && isVariable(condition.left, index)) {
+            loop.limit = condition.right;
+            loop.inclusive = op == LESS_EQUAL;
+            return true;
+        }
+        if ((op == GREATER || op == GREATER_EQUAL) && isVariable(condition.right, index)) {
+            loop.limit = condition.left;
+            loop.inclusive = op == GREATER_EQUAL;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean increment(Expr increment, String index) {
+        if (!(increment instanceof Expr.Assign))
+            return false;
+        Expr.Assign assign = (Expr.Assign) increment;
+        if (!assign.name.lexeme.equals(index) || !(assign.value instanceof Expr.Binary))
+            return false;
+        Expr.Binary sum = (Expr.Binary) assign.value;
+        if (sum.operator.type != PLUS)
+            return false;
+        return isVariable(sum.left, index) && isOne(sum.right)
+                || isOne(sum.left) && isVariable(sum.right, index);
+    }
+
+    private static boolean isVariable(Expr expr, String name) {
+        return expr instanceof Expr.Variable && ((Expr.Variable) expr).name.lexeme.equals(name);
+    }
+
+    private static boolean isOne(Expr expr) {
+        return expr instanceof Expr.Literal && Integer.valueOf(1).equals(((Expr.Literal) expr).value);
+    }
+
+    // Structural equality, used to match the two copies of e in a min/max.
+    static boolean same(Expr a, Expr b) {
+        if (a instanceof Expr.Literal && b instanceof Expr.Literal)
+            return Objects.equals(((Expr.Literal) a).value, ((Expr.Literal) b).value);
+        if (a instanceof Expr.Variable && b instanceof Expr.Variable)
+            return ((Expr.Variable) a).name.lexeme.equals(((Expr.Variable) b).name.lexeme);
+        if (a instanceof Expr.Grouping && b instanceof Expr.Grouping)
+            return same(((Expr.Grouping) a).expression, ((Expr.Grouping) b).expression);
+        if (a instanceof Expr.Unary && b instanceof Expr.Unary) {
+            Expr.Unary x = (Expr.Unary) a;
+            Expr.Unary y = (Expr.Unary) b;
+            return x.operator.type == y.operator.type && same(x.right, y.right);
+        }
+        if (a instanceof Expr.Binary && b instanceof Expr.Binary) {
+            Expr.Binary x = (Expr.Binary) a;
+            Expr.Binary y = (Expr.Binary) b;
+            return x.operator.type == y.operator.type && same(x.left, y.left) && same(x.right, y.right);
+        }
+        if (a instanceof Expr.Index && b instanceof Expr.Index) {
+            Expr.Index x = (Expr.Index) a;
+            Expr.Index y = (Expr.Index) b;
+            return same(x.array, y.array) && same(x.index, y.index);
+        }
+        if (a instanceof Expr.Logical && b instanceof Expr.Logical) {
+            Expr.Logical x = (Expr.Logical) a;
+            Expr.Logical y = (Expr.Logical) b;
+            return x.operator.type == y.operator.type && same(x.left, y.left) && same(x.right, y.right);
+        }
+        return false;
+    }
+
+    // Reads and writes of a statement tree. Writes to a variable declared in
+    // a block the write is inside are local and not recorded; a name only
+    // counts as declared from its VAR to the end of that block. Reduction
+    // statements are recorded as reductions; the reduced variable's own reads
+    // and writes in them are not counted. Neither are xs[i] reads, i being
+    // the loop variable; xs[i] writes go to elementWrites.
+    private static class Effects implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+        final String index;
+        final Map<String, Integer> reads = new HashMap<>();
+        final Set<String> writes = new HashSet<>();
+        final Set<String> elementWrites = new HashSet<>();
+        final Map<String, List<Reduction>> reductions = new HashMap<>();
+        // The names declared by each enclosing block, innermost last.
+        private final List<Set<String>> scopes = new ArrayList<>();
+        boolean input = false;
+        // A user function called from the tree; its effects are unknown.
+        String call;
+
+        Effects(String index) {
+            this.index = index;
+        }
+
+        void visit(Stmt stmt) {
+            if (stmt != null)
+                stmt.accept(this);
+        }
+
+        void visit(Expr expr) {
+            if (expr != null)
+                expr.accept(this);
+        }
+
+        private boolean local(String name) {
+            for (Set<String> scope : scopes) {
+                if (scope.contains(name))
+                    return true;
+            }
+            return false;
+        }
+
+        private void write(String name) {
+            if (!local(name))
+                writes.add(name);
+        }
+
+        void reduction(Token name, Kind kind) {
+            if (local(name.lexeme))
+                return;
+            reductions.computeIfAbsent(name.lexeme, k -> new ArrayList<>())
+                    .add(new Reduction(name, kind));
+        }
+
+        // s = s + e, s = e + s or s = s - e; visits e.
+        private boolean sum(Expr expr) {
+            if (!(expr instanceof Expr.Assign))
+                return false;
+            Expr.Assign assign = (Expr.Assign) expr;
+            if (!(assign.value instanceof Expr.Binary))
+                return false;
+            Expr.Binary value = (Expr.Binary) assign.value;
+            String name = assign.name.lexeme;
+            Expr operand;
+            if ((value.operator.type == PLUS || value.operator.type == MINUS)
+                    && isVariable(value.left, name)) {
+                operand = value.right;
+            } else if (value.operator.type == PLUS && isVariable(value.right, name)) {
+                operand = value.left;
+            } else {
+                return false;
+            }
+            reduction(assign.name, Kind.SUM);
+            visit(operand);
+            return true;
+        }
+
+        // IF (e < m) m = e and its mirror images; visits both copies of e.
+        private boolean extreme(Stmt.If stmt) {
+            if (stmt.elseBranch != null || !(stmt.condition instanceof Expr.Binary))
+                return false;
+            Stmt then = stmt.thenBranch;
+            if (then instanceof Stmt.Block && ((Stmt.Block) then).statements.size() == 1)
+                then = ((Stmt.Block) then).statements.get(0);
+            if (!(then instanceof Stmt.Expression)
+                    || !(((Stmt.Expression) then).expression instanceof Expr.Assign))
+                return false;
+            Expr.Assign assign = (Expr.Assign) ((Stmt.Expression) then).expression;
+            String name = assign.name.lexeme;
+
+            Expr.Binary condition = (Expr.Binary) stmt.condition;
+            boolean less;
+            switch (condition.operator.type) {
+                case LESS:
+                case LESS_EQUAL:
+                    less = true;
+                    break;
+                case GREATER:
+                case GREATER_EQUAL:
+                    less = false;
+                    break;
+                default:
+                    return false;
+            }
+            Expr candidate;
+            if (isVariable(condition.right, name)) {
+                candidate = condition.left;
+            } else if (isVariable(condition.left, name)) {
+                candidate = condition.right;
+                less = !less;
+            } else {
+                return false;
+            }
+            if (!same(candidate, assign.value))
+                return false;
+
+            reduction(assign.name, less ? Kind.MIN : Kind.MAX);
+            visit(candidate);
+            visit(assign.value);
+            return true;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            if (!sum(stmt.expression))
+                visit(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            visit(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            visit(stmt.initializer);
+            if (!scopes.isEmpty())
+                scopes.get(scopes.size() - 1).add(stmt.name.lexeme);
+            return null;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            scopes.add(new HashSet<>());
+            for (Stmt statement : stmt.statements)
+                visit(statement);
+            scopes.remove(scopes.size() - 1);
+            return null;
+        }
+
+        @Override
+        public Void visitExecutableStmt(Stmt.Executable stmt) {
+            for (Stmt statement : stmt.statements)
+                visit(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitInputStmt(Stmt.Input stmt) {
+            input = true;
+            for (Token token : stmt.tokens)
+                write(token.lexeme);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            if (extreme(stmt))
+                return null;
+            visit(stmt.condition);
+            visit(stmt.thenBranch);
+            visit(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            visit(stmt.condition);
+            visit(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+            visit(stmt.sequential);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            visit(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            write(expr.name.lexeme);
+            visit(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            visit(expr.left);
+            visit(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            visit(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            visit(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            reads.merge(expr.name.lexeme, 1, Integer::sum);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexExpr(Expr.Index expr) {
+            if (!(expr.array instanceof Expr.Variable) || !isVariable(expr.index, index))
+                visit(expr.array);
+            visit(expr.index);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexAssignExpr(Expr.IndexAssign expr) {
+            if (expr.array instanceof Expr.Variable) {
+                String name = ((Expr.Variable) expr.array).name.lexeme;
+                // An array the iteration declares is its own.
+                if (!local(name)) {
+                    if (isVariable(expr.index, index))
+                        elementWrites.add(name);
+                    else
+                        writes.add(name);
+                }
+            } else {
+                visit(expr.array);
+            }
+            visit(expr.index);
+            visit(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            if (!Builtins.isBuiltin(expr.name.lexeme))
+                call = expr.name.lexeme;
+            for (int i = 0; i < expr.arguments.size(); i++) {
+                Expr argument = expr.arguments.get(i);
+                if (i == 0 && Builtins.mutates(expr.name.lexeme) && argument instanceof Expr.Variable)
+                    write(((Expr.Variable) argument).name.lexeme);
+                else
+                    visit(argument);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitCacheStoreExpr(Expr.CacheStore expr) {
+            visit(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitCacheLoadExpr(Expr.CacheLoad expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Expr.Logical expr) {
+            visit(expr.left);
+            visit(expr.right);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the syntax and runtime errors of one compilation or execution.
+ * Messages are optionally echoed to a stream as they are reported.
+ */
+public final class Diagnostics {
+    private final PrintStream err;
+    private final List<String> messages = new ArrayList<>();
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    public Diagnostics() {
+        this(null);
+    }
+
+    public Diagnostics(PrintStream err) {
+        this.err = err;
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    void report(int line, String where, String message) {
+        print("[line " + line + "] Error" + where + ": " + message);
+        hadError = true;
+    }
+
+    void runtimeError(RuntimeError error) {
+        print(error.getMessage() +
+                "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+    }
+
+    private void print(String message) {
+        messages.add(message);
+        if (err != null)
+            err.println(message);
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public List<String> messages() {
+        return Collections.unmodifiableList(messages);
+    }
+
+    // Same exit codes CFPL.main has always used.
+    public int exitStatus() {
+        if (hadError)
+            return 65;
+        if (hadRuntimeError)
+            return 70;
+        return 0;
+    }
+}
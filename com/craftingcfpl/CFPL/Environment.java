@@ -7,8 +7,46 @@ class Environment {
 
     final Environment enclosing;
 
-    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Binding> values = new HashMap<>();
+
+    // A variable's value. Variables are never removed, so a Binding stays
+    // the variable's for as long as its Environment lives. INT, FLOAT, BOOL
+    // and CHAR values are kept unboxed in bits, with kind saying which;
+    // anything else is in value and kind is null.
+    static final class Binding {
+        ValueType kind;
+        long bits;
+        Object value;
+
+        Object get() {
+            return kind == null ? value : kind.box(bits);
+        }
+
+        void set(Object value) {
+            kind = ValueType.packed(value);
+            if (kind == null) {
+                this.value = value;
+            } else {
+                bits = ValueType.bits(value);
+                this.value = null;
+            }
+        }
+    }
 
+    // Where a name resolved the last time an Expr.Variable or Expr.Assign
+    // looked it up: depth enclosing hops away, in owner. Immutable, so PARALLEL
+    // FOR chunks racing on a node never see half of one.
+    static final class Resolution {
+        final int depth;
+        final Environment owner;
+        final Binding binding;
+
+        Resolution(int depth, Environment owner, Binding binding) {
+            this.depth = depth;
+            this.owner = owner;
+            this.binding = binding;
+        }
+    }
 
     // Global or local
     Environment() {
@@ -20,53 +58,80 @@ class Environment {
     }
 
     void define(String name, Object value, int line) {
-        if (values.get(name) != null) {
+        Binding binding = values.get(name);
+        if (binding == null) {
+            binding = new Binding();
+            values.put(name, binding);
+        } else if (binding.get() != null) {
             throw new RuntimeError(new Token(TokenType.VAR, name, value, line), name + " is already defined!");
         }
-        values.put(name, value);
+        binding.set(value);
     }
 
     Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
-        }
-        
+        return binding(name).get();
+    }
+
+    void assign(Token name, Object value) {
+        assign(name, binding(name), value);
+    }
 
-        if (enclosing != null) {
-            return enclosing.get(name);
+    // The cached resolution if it still holds: the same Environment is depth
+    // hops away and nothing in between has defined the name. Otherwise the
+    // name is resolved again.
+    Resolution resolve(Token name, Resolution cached) {
+        if (cached != null) {
+            Environment environment = this;
+            for (int i = 0; i < cached.depth && environment != null; i++) {
+                if (!environment.values.isEmpty() && environment.values.containsKey(name.lexeme))
+                    environment = null;
+                else
+                    environment = environment.enclosing;
+            }
+            if (environment == cached.owner)
+                return cached;
         }
 
-        throw new RuntimeError(name,
-                "Undefined variable '" + name.lexeme + "'.");
+        int depth = 0;
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            Binding binding = environment.values.get(name.lexeme);
+            if (binding != null)
+                return new Resolution(depth, environment, binding);
+            depth++;
+        }
+        throw undefined(name);
     }
 
-
-    void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            Object ob = values.get(name.lexeme);
-            // System.out.println("debug: " + value );
-            // System.out.println("debug: " + values );
-            
-            if (value != null) {
-                if (!ob.getClass().getSimpleName().equals(value.getClass().getSimpleName())) 
-                    throw new RuntimeError(name,
-                            name.lexeme + " expects " + ob.getClass().getSimpleName() + " but received " + value.getClass().getSimpleName() + " instead.");
-            }
-    
-            
-            values.put(name.lexeme, value);
-            return;
+    private Binding binding(Token name) {
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            Binding binding = environment.values.get(name.lexeme);
+            if (binding != null)
+                return binding;
         }
-        
+        throw undefined(name);
+    }
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
+    // Only a value of the variable's own class, or null, may be stored.
+    static void assign(Token name, Binding binding, Object value) {
+        Object ob = binding.get();
+        if (value != null) {
+            if (!ob.getClass().getSimpleName().equals(value.getClass().getSimpleName()))
+                throw new RuntimeError(name,
+                        name.lexeme + " expects " + ob.getClass().getSimpleName() + " but received " + value.getClass().getSimpleName() + " instead.");
         }
+        binding.set(value);
+    }
 
-        throw new RuntimeError(name,
-                "Undefined variable '" + name.lexeme + "'.");
+    // The same for a packed value, which needs no boxing when the variable
+    // already holds one of its type.
+    static void assign(Token name, Binding binding, ValueType type, long bits) {
+        if (binding.kind == type)
+            binding.bits = bits;
+        else
+            assign(name, binding, type.box(bits));
     }
 
-    
-}
\ No newline at end of file
+    private static RuntimeError undefined(Token name) {
+        return new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    }
+}
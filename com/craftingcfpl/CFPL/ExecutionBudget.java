@@ -0,0 +1,45 @@
+package com.craftingcfpl.CFPL;
+
+import java.time.Duration;
+
+/**
+ * Limits for one execution: statements executed, wall-clock time and bytes of
+ * STRING values created, one per character of Latin-1 text and two otherwise.
+ * Budgets are immutable; every {@code with} method returns a new one.
+ */
+public final class ExecutionBudget {
+    public static final ExecutionBudget UNLIMITED =
+            new ExecutionBudget(Long.MAX_VALUE, 0, Long.MAX_VALUE);
+
+    final long maxStatements;
+    final long timeoutNanos;
+    final long maxStringBytes;
+
+    private ExecutionBudget(long maxStatements, long timeoutNanos, long maxStringBytes) {
+        this.maxStatements = maxStatements;
+        this.timeoutNanos = timeoutNanos;
+        this.maxStringBytes = maxStringBytes;
+    }
+
+    public ExecutionBudget withMaxStatements(long maxStatements) {
+        if (maxStatements < 0)
+            throw new IllegalArgumentException("maxStatements < 0");
+        return new ExecutionBudget(maxStatements, timeoutNanos, maxStringBytes);
+    }
+
+    public ExecutionBudget withTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero())
+            throw new IllegalArgumentException("timeout must be positive");
+        return new ExecutionBudget(maxStatements, timeout.toNanos(), maxStringBytes);
+    }
+
+    public ExecutionBudget withMaxStringBytes(long maxStringBytes) {
+        if (maxStringBytes < 0)
+            throw new IllegalArgumentException("maxStringBytes < 0");
+        return new ExecutionBudget(maxStatements, timeoutNanos, maxStringBytes);
+    }
+
+    boolean hasTimeout() {
+        return timeoutNanos > 0;
+    }
+}
@@ -0,0 +1,76 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The I/O streams and diagnostics of a single program execution. A context
+ * can only be used once.
+ */
+public final class ExecutionContext {
+    InputSource input;
+    final PrintStream out;
+    final Diagnostics diagnostics;
+    ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+    final List<ExecutionListener> listeners = new ArrayList<>();
+    private boolean used = false;
+
+    public ExecutionContext() {
+        this(System.in, System.out, System.err);
+    }
+
+    public ExecutionContext(InputStream in, PrintStream out, PrintStream err) {
+        this(new BufferedReader(new InputStreamReader(in)), out, err);
+    }
+
+    ExecutionContext(BufferedReader in, PrintStream out, PrintStream err) {
+        this(new InputSource.Console(in), out, err);
+    }
+
+    ExecutionContext(InputSource input, PrintStream out, PrintStream err) {
+        this.input = input;
+        this.out = out;
+        this.diagnostics = new Diagnostics(err);
+    }
+
+    synchronized void begin() {
+        if (used)
+            throw new IllegalStateException("ExecutionContext has already been used.");
+        used = true;
+    }
+
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    public void addListener(ExecutionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Records every line INPUT: consumes; the log is complete once the
+     * program has been executed.
+     */
+    public Supplier<InputLog> recordInput() {
+        InputSource.Recording recording = new InputSource.Recording(input);
+        input = recording;
+        return recording::log;
+    }
+
+    /**
+     * Feeds INPUT: from a recorded log instead of the input stream. Nothing is
+     * read from the console and no "[Input]" prompts are printed.
+     */
+    public void replayInput(InputLog log) {
+        input = new InputSource.Replay(log);
+    }
+
+    public Diagnostics diagnostics() {
+        return diagnostics;
+    }
+}
@@ -0,0 +1,32 @@
+package com.craftingcfpl.CFPL;
+
+/**
+ * Observes a running program. Listeners are registered on an
+ * {@link ExecutionContext}; executions without listeners run on the plain
+ * {@link Interpreter} and pay nothing for this interface.
+ */
+public interface ExecutionListener {
+
+    default void beforeStatement(Stmt stmt) {
+    }
+
+    // Also called when the statement ends with a runtime error.
+    default void afterStatement(Stmt stmt) {
+    }
+
+    default void afterExpression(Expr expr, Object value) {
+    }
+
+    default void variableRead(String name, Object value) {
+    }
+
+    // Declarations, assignments and INPUT: values.
+    default void variableWritten(String name, Object value) {
+    }
+
+    default void input(String line) {
+    }
+
+    default void output(String text) {
+    }
+}
@@ -18,6 +18,16 @@ public abstract class Expr {
 
         R visitLogicalExpr(Logical stmt);
 
+        R visitIndexExpr(Index expr);
+
+        R visitIndexAssignExpr(IndexAssign expr);
+
+        R visitCallExpr(Call expr);
+
+        R visitCacheStoreExpr(CacheStore expr);
+
+        R visitCacheLoadExpr(CacheLoad expr);
+
 
     }
 
@@ -34,6 +44,10 @@ public abstract class Expr {
 
         public final Token name;
         public final Expr value;
+        // Frame slot inside a function, -1 for globals. Set by Resolver.
+        int slot = -1;
+        // Inline cache for names in Environments, see Environment.resolve.
+        Environment.Resolution resolution;
     }
 
     public static class Binary extends Expr { // 
@@ -105,6 +119,10 @@ public abstract class Expr {
         }
 
         public final Token name;
+        // Frame slot inside a function, -1 for globals. Set by Resolver.
+        int slot = -1;
+        // Inline cache for names in Environments, see Environment.resolve.
+        Environment.Resolution resolution;
     }
 
     static class Logical extends Expr {
@@ -124,5 +142,91 @@ public abstract class Expr {
         }
     }
 
+    // xs[i]
+    static class Index extends Expr {
+        Index(Expr array, Token bracket, Expr index) {
+            this.array = array;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        final Expr array;
+        final Token bracket;
+        final Expr index;
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexExpr(this);
+        }
+    }
+
+    // xs[i] = value
+    static class IndexAssign extends Expr {
+        IndexAssign(Expr array, Token bracket, Expr index, Expr value) {
+            this.array = array;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        final Expr array;
+        final Token bracket;
+        final Expr index;
+        final Expr value;
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexAssignExpr(this);
+        }
+    }
+
+    static class Call extends Expr {
+        Call(Token name, List<Expr> arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        final Token name;
+        final List<Expr> arguments;
+        // Inline cache: the user function this call resolved to the first
+        // time it ran. Every execution of a program resolves it the same way.
+        Stmt.Function function;
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitCallExpr(this);
+        }
+    }
+
+    // Added by CommonSubexpressions: evaluates expression and keeps the value
+    // in a temporary slot for the CacheLoads that follow in the same basic block.
+    static class CacheStore extends Expr {
+        CacheStore(int slot, Expr expression) {
+            this.slot = slot;
+            this.expression = expression;
+        }
+
+        final int slot;
+        final Expr expression;
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitCacheStoreExpr(this);
+        }
+    }
+
+    static class CacheLoad extends Expr {
+        CacheLoad(int slot) {
+            this.slot = slot;
+        }
+
+        final int slot;
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitCacheLoadExpr(this);
+        }
+    }
+
     public abstract <R> R accept(Visitor<R> visitor);
 }
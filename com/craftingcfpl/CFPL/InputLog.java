@@ -0,0 +1,46 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The lines consumed by INPUT: statements during one execution, in order.
+ * Logs are immutable, so one log can be replayed by many executions at once.
+ * On disk a log is a header line followed by one input line per line.
+ */
+public final class InputLog {
+    private static final String HEADER = "CFPL-INPUT 1";
+
+    final List<String> lines;
+
+    InputLog(List<String> lines) {
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+    }
+
+    public static InputLog of(List<String> lines) {
+        return new InputLog(lines);
+    }
+
+    public static InputLog read(Path file) throws IOException {
+        List<String> content = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (content.isEmpty() || !content.get(0).equals(HEADER))
+            throw new IOException(file + " is not a CFPL input log");
+        return new InputLog(content.subList(1, content.size()));
+    }
+
+    public void write(Path file) throws IOException {
+        List<String> content = new ArrayList<>(lines.size() + 1);
+        content.add(HEADER);
+        content.addAll(lines);
+        Files.write(file, content, StandardCharsets.UTF_8);
+    }
+
+    public List<String> lines() {
+        return lines;
+    }
+}
@@ -0,0 +1,81 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Where INPUT: gets its lines from.
+interface InputSource {
+
+    // The next line, or null at end of input.
+    String readLine() throws IOException;
+
+    // Whether INPUT: should print its "[Input]" prompt first.
+    boolean prompts();
+
+    static class Console implements InputSource {
+        private final BufferedReader reader;
+
+        Console(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            return reader.readLine();
+        }
+
+        @Override
+        public boolean prompts() {
+            return true;
+        }
+    }
+
+    // Passes lines through and keeps every one consumed.
+    static class Recording implements InputSource {
+        private final InputSource source;
+        private final List<String> lines = new ArrayList<>();
+
+        Recording(InputSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            String line = source.readLine();
+            if (line != null)
+                lines.add(line);
+            return line;
+        }
+
+        @Override
+        public boolean prompts() {
+            return source.prompts();
+        }
+
+        InputLog log() {
+            return new InputLog(lines);
+        }
+    }
+
+    // Feeds a recorded log back; reaching its end behaves like end of input.
+    static class Replay implements InputSource {
+        private final List<String> lines;
+        private int next = 0;
+
+        Replay(InputLog log) {
+            this.lines = log.lines;
+        }
+
+        @Override
+        public String readLine() {
+            return next < lines.size() ? lines.get(next++) : null;
+        }
+
+        @Override
+        public boolean prompts() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.List;
+
+// How INPUT: turns a line into values, shared by Interpreter and programs
+// compiled by cfplc so both accept, convert and reject lines the same way.
+final class InputValues {
+
+    private InputValues() {
+    }
+
+    // The comma separated values of a line, or null (after reporting it) if
+    // there is not one per variable. A null line throws NullPointerException,
+    // which INPUT: prints.
+    static String[] split(Diagnostics diagnostics, List<Token> tokens, String inputs) {
+        // [1, 2]
+        String[] values = inputs.split(",");
+
+        if (inputs == null || values.length != tokens.size()) {
+            diagnostics.error(tokens.get(0), "Error you did not enter values");
+
+            return null;
+        }
+        return values;
+    }
+
+    // Parses value as the type of the variable's current value. The result
+    // still has to pass the variable's type check on assignment.
+    static Object convert(Diagnostics diagnostics, Token name, Object currValue, String value) {
+        Object fValue = value;
+        if (currValue != null) {
+            try {
+                if (currValue instanceof Integer) {
+                    fValue = Integer.valueOf(value);
+                } else if (currValue instanceof Double) {
+                    fValue = Double.parseDouble(value);
+                } else if (currValue instanceof Character) {
+                    if (value.length() > 1) {
+                        throw new RuntimeError(name, "Expected a character");
+                    } else if (value.length() == 1) {
+                        fValue = value.charAt(0);
+                    }
+                } else if (currValue instanceof Boolean) {
+                    if (value.contains("TRUE")) {
+                        fValue = true;
+                    } else if (value.contains("FALSE")) {
+                        fValue = false;
+                    }
+                }
+            } catch (ClassCastException | NumberFormatException e) {
+                diagnostics.runtimeError(new RuntimeError(name, "Error: Incorrect Datatype"));
+                fValue = getDataType(fValue);
+
+            }
+        }
+        return fValue;
+    }
+
+    private static Object getDataType (Object value) {
+        String objStr = value.toString();
+        if (objStr.length() == 1)
+            return objStr.charAt(0);
+        if (objStr.length() > 1) {
+            if (objStr.toLowerCase().equals("true"))
+                return true;
+            else if (objStr.toLowerCase().equals("false"))
+                return false;
+            else if (objStr.contains(".") && isAllDigit(objStr.substring(objStr.indexOf('.') + 1)) )
+                return Double.parseDouble(objStr);
+            else return objStr;
+        }
+
+        return ((Number)value);
+    }
+
+    private static boolean isAllDigit(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (!Character.isDigit(str.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+}
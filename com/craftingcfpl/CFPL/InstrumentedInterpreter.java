@@ -0,0 +1,119 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.IOException;
+import java.util.List;
+
+// Interpreter that reports to ExecutionListeners. Kept separate so the plain
+// Interpreter's hot paths carry no listener checks.
+class InstrumentedInterpreter extends Interpreter {
+    private final ExecutionListener[] listeners;
+
+    InstrumentedInterpreter(ExecutionContext context, List<ExecutionListener> listeners) {
+        super(context);
+        this.listeners = listeners.toArray(new ExecutionListener[0]);
+    }
+
+    @Override
+    void execute(Stmt stmt) {
+        for (ExecutionListener listener : listeners)
+            listener.beforeStatement(stmt);
+        try {
+            super.execute(stmt);
+        } finally {
+            for (ExecutionListener listener : listeners)
+                listener.afterStatement(stmt);
+        }
+    }
+
+    @Override
+    boolean parallel() {
+        return false;
+    }
+
+    @Override
+    boolean memoize() {
+        return false;
+    }
+
+    @Override
+    boolean tracing() {
+        return false;
+    }
+
+    @Override
+    boolean cacheLookups() {
+        return false;
+    }
+
+    @Override
+    boolean unboxed() {
+        return false;
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        Object value = super.evaluate(expr);
+        for (ExecutionListener listener : listeners)
+            listener.afterExpression(expr, value);
+        return value;
+    }
+
+    @Override
+    Object lookUp(Token name) {
+        Object value = super.lookUp(name);
+        for (ExecutionListener listener : listeners)
+            listener.variableRead(name.lexeme, value);
+        return value;
+    }
+
+    @Override
+    void assign(Token name, Object value) {
+        super.assign(name, value);
+        for (ExecutionListener listener : listeners)
+            listener.variableWritten(name.lexeme, value);
+    }
+
+    @Override
+    void define(Token name, Object value) {
+        super.define(name, value);
+        for (ExecutionListener listener : listeners)
+            listener.variableWritten(name.lexeme, value);
+    }
+
+    @Override
+    Object local(Token name, int slot) {
+        Object value = super.local(name, slot);
+        for (ExecutionListener listener : listeners)
+            listener.variableRead(name.lexeme, value);
+        return value;
+    }
+
+    @Override
+    void assignLocal(Token name, int slot, Object value) {
+        super.assignLocal(name, slot, value);
+        for (ExecutionListener listener : listeners)
+            listener.variableWritten(name.lexeme, value);
+    }
+
+    @Override
+    void defineLocal(Token name, int slot, Object value) {
+        super.defineLocal(name, slot, value);
+        for (ExecutionListener listener : listeners)
+            listener.variableWritten(name.lexeme, value);
+    }
+
+    @Override
+    void output(String text) {
+        super.output(text);
+        for (ExecutionListener listener : listeners)
+            listener.output(text);
+    }
+
+    @Override
+    String readInput() throws IOException {
+        String line = super.readInput();
+        for (ExecutionListener listener : listeners)
+            listener.input(line);
+        return line;
+    }
+}
@@ -1,28 +1,134 @@
 package com.craftingcfpl.CFPL;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
-import javax.lang.model.util.ElementScanner14;
-
-import com.craftingcfpl.CFPL.Stmt.While;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
 public class Interpreter implements
         Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
+    // Deadlines are only looked at every this many statements.
+    private static final long CLOCK_CHECK_INTERVAL = 1024;
+    private static final boolean TRACING = !"false".equals(System.getProperty("cfpl.trace"));
+
+    private final Diagnostics diagnostics;
+    private final PrintStream out;
+    private final InputSource inputSource;
+    private final ExecutionBudget budget;
+    private final long deadline;
     private Environment environment = new Environment();
+    private final Environment globals;
+
+    // Functions by name; every FUN in the program is known before it runs.
+    // Inside a call, frame holds the parameters and locals by slot.
+    private final Map<String, Stmt.Function> functions;
+    private Object[] frame;
+    // The innermost call, reported if the Java stack overflows.
+    private Token callSite;
+    // Caches of memoized functions by id, created on their first call.
+    private MemoCache[] memos = new MemoCache[0];
+    private long memoHits = 0;
+    private long memoMisses = 0;
+    // Values kept by CacheStore for later CacheLoads in the same basic block,
+    // packed into temporaryBits when temporaryTypes says so.
+    private Object[] temporaries = new Object[0];
+    private ValueType[] temporaryTypes = new ValueType[0];
+    private long[] temporaryBits = new long[0];
+
+    // Where evaluateTagged leaves its result: a packed INT, FLOAT, BOOL or
+    // CHAR in bits, anything else in ref.
+    private long bits;
+    private Object ref;
+
+    // Statement budget: fuel counts down from fuelIssued at every safepoint
+    // (block entry and loop back-edge). Without limits it starts at
+    // Long.MAX_VALUE and the slow path is never taken.
+    private long fuel;
+    private long fuelIssued;
+    private long statementsAccounted = 0;
+    private long stringBytesLeft;
+    // Set in a PARALLEL FOR chunk, which draws its fuel and string bytes from
+    // what its loop was given instead of from the budget.
+    private final Pool pool;
+
+    // False inside a PARALLEL FOR chunk: nested parallel loops run sequentially.
+    private boolean parallel = true;
+    // Chunks share the nodes, and would keep replacing each other's inline
+    // caches with resolutions in their own Environments.
+    private boolean cacheLookups = true;
+
+    // The loop whose IF arms are being recorded for its trace, if any.
+    LoopTrace.Recording recording;
+
+    Interpreter(ExecutionContext context) {
+        this.diagnostics = context.diagnostics;
+        this.out = context.out;
+        this.inputSource = context.input;
+        this.budget = context.budget;
+        this.deadline = budget.hasTimeout() ? System.nanoTime() + budget.timeoutNanos : 0;
+        this.stringBytesLeft = budget.maxStringBytes;
+        this.fuelIssued = nextFuel();
+        this.fuel = fuelIssued;
+        this.globals = environment;
+        this.functions = new HashMap<>();
+        this.pool = null;
+    }
+
+    // A PARALLEL FOR chunk. It reads the parent's variables through its
+    // environment, writes OUTPUT: to its own stream and starts without fuel
+    // or string bytes: it takes both from the pool its siblings share, and
+    // the parent charges what the pool gave out afterwards.
+    private Interpreter(Interpreter parent, Environment environment, PrintStream out, Pool pool) {
+        this.diagnostics = parent.diagnostics;
+        this.out = out;
+        this.inputSource = parent.inputSource;
+        this.budget = parent.budget;
+        this.deadline = parent.deadline;
+        this.environment = environment;
+        this.globals = parent.globals;
+        this.functions = parent.functions;
+        this.memos = parent.memos;
+        this.temporaries = new Object[parent.temporaries.length];
+        this.temporaryTypes = new ValueType[parent.temporaries.length];
+        this.temporaryBits = new long[parent.temporaries.length];
+        this.pool = pool;
+        this.parallel = false;
+        this.cacheLookups = false;
+    }
     
-    void interpret(List<Stmt> statements) {
+    void interpret(List<Stmt> statements, int temporaries) {
+        this.temporaries = new Object[temporaries];
+        this.temporaryTypes = new ValueType[temporaries];
+        this.temporaryBits = new long[temporaries];
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Function)
+                functions.put(((Stmt.Function) statement).name.lexeme, (Stmt.Function) statement);
+        }
+        memos = new MemoCache[functions.size()];
+        Stmt current = null;
         try {
             for (Stmt statement : statements) {
+                current = statement;
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            CFPL.runtimeError(error);
+            diagnostics.runtimeError(error);
+        } catch (StackOverflowError error) {
+            // Outside any function call, say an expression nested too deep,
+            // there is no call site; the top-level statement is reported.
+            Token at = callSite != null ? callSite : new Token(TokenType.EOF, "", null, current.line);
+            diagnostics.runtimeError(new RuntimeError(at, "Stack overflow."));
         }
     }
 
@@ -32,18 +138,26 @@ public class Interpreter implements
         return null;
     }
 
+    // Indexed rather than for-each: an Iterator the JIT cannot inline is
+    // garbage on every block entry.
     void executeExecutable(List<Stmt> statements) {
-        for (Stmt statement : statements) {
-            execute(statement);
+        for (int i = 0; i < statements.size(); i++) {
+            execute(statements.get(i));
         }
     }
 
-    private void execute(Stmt stmt) {
+    void execute(Stmt stmt) {
         stmt.accept(this);
     }
     
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        safepoint(stmt.statements.size(), stmt.keyword);
+        // Nothing is defined in a block without VARs or inside a function.
+        if (!stmt.scoped) {
+            executeExecutable(stmt.statements);
+            return null;
+        }
         executeBlock(stmt.statements, new Environment(environment));
         return null;
     }
@@ -53,10 +167,7 @@ public class Interpreter implements
         Environment previous = this.environment;
         try {
             this.environment = environment;
-
-            for (Stmt statement : statements) {
-                execute(statement);
-            }
+            executeExecutable(statements);
         } finally {
             this.environment = previous;
         }
@@ -64,15 +175,289 @@ public class Interpreter implements
 
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
-        while(isTruthy(evaluate(stmt.condition))) {
+        while(condition(stmt.condition)) {
             execute(stmt.body);
+            safepoint(1, stmt.keyword);
+            // Hot loops go on in a LoopTrace.
+            if (stmt.backEdges < LoopTrace.TRACE_THRESHOLD)
+                stmt.backEdges++;
+            else if (!stmt.untraceable && tracing() && LoopTrace.onBackEdge(this, stmt))
+                return null;
         }
+        // A loop that ends while being recorded is recorded again next time.
+        if (recording != null && recording.loop == stmt)
+            recording = null;
         return null;
     }
 
+    @Override
+    public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+        if (stmt.serialReason != null || !parallel() || !executeParallel(stmt))
+            execute(stmt.sequential);
+        return null;
+    }
+
+    // Listeners expect statements one at a time in program order, so
+    // InstrumentedInterpreter turns this off.
+    boolean parallel() {
+        return parallel;
+    }
+
+    // Memoized calls skip their statements, which listeners would notice.
+    boolean memoize() {
+        return true;
+    }
+
+    // So do loops running in a trace. -Dcfpl.trace=false turns them off.
+    boolean tracing() {
+        return TRACING;
+    }
+
+    // And variables read through an inline cache, which skip lookUp and assign.
+    boolean cacheLookups() {
+        return cacheLookups;
+    }
+
+    // And expressions evaluated by evaluateTagged, which skips evaluate.
+    boolean unboxed() {
+        return true;
+    }
+
+    long memoHits() {
+        return memoHits;
+    }
+
+    long memoMisses() {
+        return memoMisses;
+    }
+
+    // Splits the iterations into chunks run on the common ForkJoin pool, then
+    // emits each chunk's output and folds in its reductions in iteration
+    // order. Returns false, having changed nothing, if the values at hand rule
+    // out running in parallel.
+    private boolean executeParallel(Stmt.ParallelFor stmt) {
+        List<DependenceAnalysis.Reduction> reductions = stmt.reductions;
+        Object[] totals = new Object[reductions.size()];
+        for (int r = 0; r < totals.length; r++) {
+            totals[r] = lookUp(reductions.get(r).name);
+            if (reductions.get(r).identity(totals[r]) == null)
+                return false;
+        }
+        Object from = evaluate(stmt.variable.initializer);
+        Object to = evaluate(stmt.limit);
+        if (!(from instanceof Integer) || !(to instanceof Integer))
+            return false;
+        if (stmt.inclusive && (int) to == Integer.MAX_VALUE)
+            return false;
+
+        safepoint(2, stmt.keyword);
+        long first = (int) from;
+        long count = (int) to - first + (stmt.inclusive ? 1 : 0);
+        if (count <= 0)
+            return true;
+
+        int chunks = (int) Math.min(count, 4L * ForkJoinPool.getCommonPoolParallelism());
+        Pool pool = new Pool(budget.maxStatements - statementsExecuted(), stringBytesLeft, chunks,
+                budget.hasTimeout() ? CLOCK_CHECK_INTERVAL : Long.MAX_VALUE);
+        Chunk[] tasks = new Chunk[chunks];
+        for (int c = 0; c < chunks; c++) {
+            tasks[c] = new Chunk(stmt, totals, pool, c,
+                    (int) (first + count * c / chunks),
+                    (int) (first + count * (c + 1) / chunks));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        for (Chunk chunk : tasks) {
+            byte[] output = chunk.buffer.toByteArray();
+            out.write(output, 0, output.length);
+            if (chunk.error != null) {
+                // Counted, but the chunk's error is the one reported.
+                statementsAccounted += pool.statementsUsed();
+                throw chunk.error;
+            }
+        }
+        charge(pool.statementsUsed(), pool.stringBytesUsed(), stmt.keyword);
+        for (int r = 0; r < totals.length; r++) {
+            DependenceAnalysis.Reduction reduction = reductions.get(r);
+            for (Chunk chunk : tasks)
+                totals[r] = reduction.combine(totals[r], chunk.environment.get(reduction.name));
+            assign(reduction.name, totals[r]);
+        }
+        return true;
+    }
+
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Stmt.ParallelFor stmt;
+        final Pool pool;
+        final int number;
+        final int from;
+        final int to;
+        final Environment environment;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final Interpreter child;
+        RuntimeError error;
+
+        Chunk(Stmt.ParallelFor stmt, Object[] totals, Pool pool, int number, int from, int to) {
+            this.stmt = stmt;
+            this.pool = pool;
+            this.number = number;
+            this.from = from;
+            this.to = to;
+            this.environment = new Environment(Interpreter.this.environment);
+            for (int r = 0; r < totals.length; r++) {
+                DependenceAnalysis.Reduction reduction = stmt.reductions.get(r);
+                environment.define(reduction.name.lexeme, reduction.identity(totals[r]),
+                        reduction.name.line);
+            }
+            this.child = new Interpreter(Interpreter.this, environment, new PrintStream(buffer), pool);
+        }
+
+        @Override
+        protected void compute() {
+            Token index = stmt.variable.name;
+            try {
+                environment.define(index.lexeme, from, index.line);
+                for (int i = from; i < to && !pool.failedBefore(number); i++) {
+                    environment.assign(index, i);
+                    // Charged in the order of the sequential form, the block
+                    // holding the body and the increment, then the back edge,
+                    // so both stop at the same iteration.
+                    child.safepoint(2, stmt.keyword);
+                    child.execute(stmt.body);
+                    child.safepoint(1, stmt.keyword);
+                }
+            } catch (RuntimeError error) {
+                this.error = error;
+                pool.failed(number);
+            }
+            pool.giveBack(child);
+            child.out.flush();
+        }
+    }
+
+    // What a PARALLEL FOR's chunks may use between them: the statements and
+    // string bytes left in the budget when the loop started. Chunks take
+    // small slices of what is left and give back what they did not use, so
+    // together they stop where the sequential loop would. Chunks after one
+    // that failed stop early: their output would never be written.
+    private static final class Pool {
+        final AtomicLong statements;
+        final AtomicLong stringBytes;
+        final long statementsGiven;
+        final long stringBytesGiven;
+        final int chunks;
+        final long maxSlice;
+        final AtomicInteger firstFailed = new AtomicInteger(Integer.MAX_VALUE);
+
+        Pool(long statements, long stringBytes, int chunks, long maxSlice) {
+            this.statements = new AtomicLong(statements);
+            this.stringBytes = new AtomicLong(stringBytes);
+            this.statementsGiven = statements;
+            this.stringBytesGiven = stringBytes;
+            this.chunks = chunks;
+            this.maxSlice = maxSlice;
+        }
+
+        // Pays owed, what a chunk ran past its last slice, and returns the
+        // next slice, or -1 if there is not enough left to pay.
+        long take(AtomicLong left, long owed) {
+            for (;;) {
+                long available = left.get();
+                if (available < owed)
+                    return -1;
+                long slice = Math.min(Math.max((available - owed) / (16 * chunks), 1), maxSlice);
+                slice = Math.min(slice, available - owed);
+                if (left.compareAndSet(available, available - owed - slice))
+                    return slice;
+            }
+        }
+
+        void giveBack(Interpreter child) {
+            statements.addAndGet(Math.max(child.fuel, 0));
+            stringBytes.addAndGet(Math.max(child.stringBytesLeft, 0));
+        }
+
+        void failed(int chunk) {
+            firstFailed.accumulateAndGet(chunk, Math::min);
+        }
+
+        boolean failedBefore(int chunk) {
+            return firstFailed.get() < chunk;
+        }
+
+        long statementsUsed() {
+            return statementsGiven - statements.get();
+        }
+
+        long stringBytesUsed() {
+            return stringBytesGiven - stringBytes.get();
+        }
+    }
+
+    private void charge(long statements, long stringBytes, Token where) {
+        if ((stringBytesLeft -= stringBytes) < 0) {
+            throw new RuntimeError(where,
+                    "String limit of " + budget.maxStringBytes + " bytes exceeded.");
+        }
+        safepoint(statements, where);
+    }
+
+    void safepoint(long statements, Token where) {
+        if ((fuel -= statements) < 0)
+            checkBudget(where);
+    }
+
+    private void checkBudget(Token where) {
+        statementsAccounted += fuelIssued - fuel;
+        long next = pool != null ? pool.take(pool.statements, -fuel) : nextFuel();
+        if (next < 0 || statementsAccounted > budget.maxStatements) {
+            throw new RuntimeError(where,
+                    "Statement limit of " + budget.maxStatements + " exceeded.");
+        }
+        if (budget.hasTimeout() && System.nanoTime() - deadline > 0) {
+            throw new RuntimeError(where,
+                    "Time limit of " + budget.timeoutNanos / 1_000_000 + " ms exceeded.");
+        }
+        fuelIssued = next;
+        fuel = next;
+    }
+
+    private long nextFuel() {
+        long left = budget.maxStatements - statementsAccounted;
+        return budget.hasTimeout() ? Math.min(left, CLOCK_CHECK_INTERVAL) : left;
+    }
+
+    long statementsExecuted() {
+        return statementsAccounted + fuelIssued - fuel;
+    }
+
+    String allocate(Token operator, String value) {
+        allocate(operator, Strings.bytes(value));
+        return value;
+    }
+
+    void allocate(Token operator, long bytes) {
+        if ((stringBytesLeft -= bytes) < 0)
+            moreStringBytes(operator);
+    }
+
+    private void moreStringBytes(Token operator) {
+        long more = pool != null ? pool.take(pool.stringBytes, -stringBytesLeft) : -1;
+        if (more < 0) {
+            throw new RuntimeError(operator,
+                    "String limit of " + budget.maxStringBytes + " bytes exceeded.");
+        }
+        stringBytesLeft = more;
+    }
+
     @Override
     public Void visitIfStmt(Stmt.If stmt) {
-        if (isTruthy(evaluate(stmt.condition))) {
+        boolean then = condition(stmt.condition);
+        if (recording != null)
+            recording.took(stmt, then);
+        if (then) {
             execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
             execute(stmt.elseBranch);
@@ -82,6 +467,8 @@ public class Interpreter implements
 
     @Override
     public Object visitLogicalExpr(Expr.Logical expr) {
+        if (unboxed())
+            return boxed(logical(expr));
         Object left = evaluate(expr.left);
 
         if (expr.operator.type == TokenType.OR) {
@@ -101,32 +488,65 @@ public class Interpreter implements
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
-        Object value = evaluate(expr.value);
-        environment.assign(expr.name, value);
+        if (unboxed())
+            return boxed(assign(expr));
+        return assign(expr, evaluate(expr.value));
+    }
+
+    private Object assign(Expr.Assign expr, Object value) {
+        // Arrays never alias; DependenceAnalysis relies on it.
+        if (value instanceof CfplArray)
+            throw new RuntimeError(expr.name, "Arrays cannot be assigned, use COPY.");
+        if (expr.slot >= 0) {
+            assignLocal(expr.name, expr.slot, value);
+        } else if (cacheLookups()) {
+            Environment.Resolution resolution = environment.resolve(expr.name, expr.resolution);
+            if (resolution != expr.resolution)
+                expr.resolution = resolution;
+            Environment.assign(expr.name, resolution.binding, value);
+        } else {
+            assign(expr.name, value);
+        }
         return value;
     }
 
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
-        evaluate(stmt.expression);
+        if (unboxed())
+            evaluateTagged(stmt.expression);
+        else
+            evaluate(stmt.expression);
         return null;
     }
 
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = (evaluate(stmt.expression));
-        System.out.println(stringify(value));
+        output(stringify(value));
         return null;
     }
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return environment.get(expr.name);
+        if (expr.slot >= 0)
+            return local(expr.name, expr.slot);
+        if (cacheLookups()) {
+            Environment.Resolution resolution = environment.resolve(expr.name, expr.resolution);
+            if (resolution != expr.resolution)
+                expr.resolution = resolution;
+            return resolution.binding.get();
+        }
+        return lookUp(expr.name);
     }
 
     //Bugs
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.size != null) {
+            declare(stmt, newArray(stmt));
+            return null;
+        }
+
         Object value = null;
         // if (stmt.initializer != null) {
             try {
@@ -162,14 +582,204 @@ public class Interpreter implements
                         break;
                 }
             } catch (ClassCastException e) {
-                CFPL.error(stmt.dataType, "Incorrect Datatype");
+                diagnostics.error(stmt.dataType, "Incorrect Datatype");
             }
         // }
 
-        environment.define(stmt.name.lexeme, value, stmt.name.line);
+        declare(stmt, value);
         return null;
     }
 
+    private void declare(Stmt.Var stmt, Object value) {
+        if (stmt.slot >= 0)
+            defineLocal(stmt.name, stmt.slot, value);
+        else
+            define(stmt.name, value);
+    }
+
+    private CfplArray newArray(Stmt.Var stmt) {
+        Object size = evaluate(stmt.size);
+        if (!(size instanceof Integer) || (int) size < 0)
+            throw new RuntimeError(stmt.name, "Array size must be a non-negative INT.");
+        return CfplArray.of(stmt.dataType.type, (int) size);
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        if (unboxed())
+            return boxed(index(expr));
+        CfplArray array = array(expr.bracket, evaluate(expr.array));
+        return array.get(array.index(expr.bracket, evaluate(expr.index)));
+    }
+
+    @Override
+    public Object visitIndexAssignExpr(Expr.IndexAssign expr) {
+        if (unboxed())
+            return boxed(indexAssign(expr));
+        CfplArray array = array(expr.bracket, evaluate(expr.array));
+        int index = array.index(expr.bracket, evaluate(expr.index));
+        Object value = evaluate(expr.value);
+        if (!array.set(index, value))
+            throw cannotHold(expr.bracket, array, value);
+        return value;
+    }
+
+    private static RuntimeError cannotHold(Token bracket, CfplArray array, Object value) {
+        return new RuntimeError(bracket, array.typeName() + " cannot hold "
+                + (value == null ? "null" : value.getClass().getSimpleName()) + ".");
+    }
+
+    private CfplArray array(Token bracket, Object value) {
+        if (!(value instanceof CfplArray))
+            throw new RuntimeError(bracket, "Only arrays can be indexed.");
+        return (CfplArray) value;
+    }
+
+    @Override
+    public Object visitCallExpr(Expr.Call expr) {
+        // The target is looked up once per call site and cached on the node.
+        Stmt.Function function = expr.function;
+        if (function == null) {
+            function = functions.get(expr.name.lexeme);
+            if (function == null) {
+                List<Object> arguments = new ArrayList<>(expr.arguments.size());
+                for (Expr argument : expr.arguments)
+                    arguments.add(evaluate(argument));
+                return Builtins.call(expr.name, arguments);
+            }
+            expr.function = function;
+        }
+        return call(expr.name, function, expr.arguments);
+    }
+
+    private Object call(Token name, Stmt.Function function, List<Expr> arguments) {
+        List<Stmt.Var> params = function.params;
+        if (arguments.size() != params.size()) {
+            throw new RuntimeError(name, name.lexeme + " expects " + params.size()
+                    + " argument" + (params.size() == 1 ? "" : "s") + " but got " + arguments.size() + ".");
+        }
+
+        // Arguments are evaluated in the caller's frame, straight into the new one.
+        Object[] callee = new Object[function.frameSize];
+        for (int i = 0; i < params.size(); i++) {
+            Stmt.Var param = params.get(i);
+            callee[param.slot] = coerce(name, param.dataType.type, evaluate(arguments.get(i)), param.name.lexeme);
+        }
+
+        if (!function.memoize || !memoize())
+            return invoke(name, function, callee);
+        MemoCache memo = memos[function.id];
+        if (memo == null)
+            memo = memos[function.id] = new MemoCache(function);
+        Object result;
+        if (memo.packed()) {
+            long key = memo.key(callee);
+            result = memo.get(key);
+            if (result == null) {
+                result = invoke(name, function, callee);
+                memo.put(key, result);
+                memoMisses++;
+                return result;
+            }
+        } else {
+            List<Object> tuple = memo.tuple(callee);
+            result = memo.get(tuple);
+            if (result == null) {
+                result = invoke(name, function, callee);
+                memo.put(tuple, result);
+                memoMisses++;
+                return result;
+            }
+        }
+        memoHits++;
+        return result;
+    }
+
+    private Object invoke(Token name, Stmt.Function function, Object[] callee) {
+
+        Object[] previousFrame = frame;
+        Environment previousEnvironment = environment;
+        Token previousCallSite = callSite;
+        frame = callee;
+        environment = globals;
+        callSite = name;
+        try {
+            for (Stmt.Var local : function.locals)
+                execute(local);
+            execute(function.body);
+        } catch (Return returned) {
+            callSite = previousCallSite;
+            if (function.returnType == null)
+                return null;
+            return coerce(name, function.returnType.type, returned.value, function.name.lexeme + "'s result");
+        } finally {
+            frame = previousFrame;
+            environment = previousEnvironment;
+        }
+        // Left alone when an error unwinds, so a stack overflow names the deepest call.
+        callSite = previousCallSite;
+        if (function.returnType != null)
+            throw new RuntimeError(function.name, function.name.lexeme + " ended without RETURN.");
+        return null;
+    }
+
+    // Parameters and results follow VAR's rules: FLOAT takes any number,
+    // everything else must already have its type.
+    private Object coerce(Token name, TokenType type, Object value, String what) {
+        boolean ok;
+        switch (type) {
+            case INT:
+                ok = value instanceof Integer;
+                break;
+            case FLOAT:
+                if (Numeric.isNumber(value))
+                    return ((Number) value).doubleValue();
+                ok = false;
+                break;
+            case CHAR:
+                ok = value instanceof Character;
+                break;
+            case BOOL:
+                ok = value instanceof Boolean;
+                break;
+            default:
+                ok = value instanceof String;
+                break;
+        }
+        if (!ok) {
+            throw new RuntimeError(name, what + " expects " + type + " but received "
+                    + (value == null ? "null" : value.getClass().getSimpleName()) + " instead.");
+        }
+        return value;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        // Hoisted by interpret().
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        throw new Return(stmt.value == null ? null : evaluate(stmt.value));
+    }
+
+    @Override
+    public Object visitCacheStoreExpr(Expr.CacheStore expr) {
+        if (unboxed())
+            return boxed(cacheStore(expr));
+        Object value = evaluate(expr.expression);
+        temporaries[expr.slot] = value;
+        return value;
+    }
+
+    @Override
+    public Object visitCacheLoadExpr(Expr.CacheLoad expr) {
+        if (unboxed())
+            return boxed(cacheLoad(expr));
+        return temporaries[expr.slot];
+    }
+
     @Override
     public Object visitLiteralExpr(Expr.Literal expr) {
         return expr.value;
@@ -177,6 +787,8 @@ public class Interpreter implements
 
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
+        if (unboxed())
+            return boxed(unary(expr));
         Object right = evaluate(expr.right);
 
         switch (expr.operator.type) {
@@ -184,11 +796,7 @@ public class Interpreter implements
             case BANG:
                 return !isTruthy(right);
             case MINUS:
-                if (right instanceof Integer) 
-                    return - (int) right;
-                if (right instanceof Double)
-                    return - (double) right;
-            
+                return Numeric.negate(expr.operator, right);
         }
 
         // Unreachable.
@@ -197,8 +805,14 @@ public class Interpreter implements
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
+        if (unboxed())
+            return boxed(binary(expr));
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
+        return binary(expr, left, right);
+    }
+
+    private Object binary(Expr.Binary expr, Object left, Object right) {
         // System.out.println(left.getClass().getSimpleName());
         // System.out.println(right.getClass().getSimpleName());
         switch (expr.operator.type) {
@@ -210,64 +824,40 @@ public class Interpreter implements
                 return isEqual(left, right);
 
             case MODULO:
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int) left % (int) right;
-                }
-                throw new RuntimeError(expr.operator, "Modulo only accepts two integers!");
+                return Numeric.modulo(expr.operator, left, right);
 
             case GREATER:
-                checkNumberOperand(expr.operator, right);
-                return ((Number)left).doubleValue() > ((Number)right).doubleValue();
+                return Numeric.greater(expr.operator, left, right);
 
             case GREATER_EQUAL:
-                checkNumberOperand(expr.operator, right);
-                return ((Number) left).doubleValue() >= ((Number) right).doubleValue();
+                return Numeric.greaterEqual(expr.operator, left, right);
 
             case LESS:
-                checkNumberOperand(expr.operator, right);
-                return ((Number)left).doubleValue() < ((Number) right).doubleValue();
+                return Numeric.less(expr.operator, left, right);
 
             case LESS_EQUAL:
-                checkNumberOperand(expr.operator, right);
-                return ((Number) left).doubleValue() <= ((Number) right).doubleValue();
+                return Numeric.lessEqual(expr.operator, left, right);
 
             case MINUS:
-                checkNumberOperand(expr.operator, right);
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int) left - (int) right;
-                }
-                return ((Number) left).doubleValue() - ((Number) right).doubleValue();
+                return Numeric.subtract(expr.operator, left, right);
 
             case SLASH:
-                checkNumberOperand(expr.operator, right);
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int) left / (int) right;
-                }
-                return ((Number) left).doubleValue() / ((Number) right).doubleValue();
+                return Numeric.divide(expr.operator, left, right);
 
             case STAR:
-                checkNumberOperand(expr.operator, right);
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int) left * (int) right;
-                }
-                
-                return ((Number) left).doubleValue() * ((Number) right).doubleValue();
+                return Numeric.multiply(expr.operator, left, right);
                 
             case PLUS:
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int) left + (int) right;
+                if (left instanceof String && right instanceof String) {
+                    return allocate(expr.operator, (String) left + (String) right);
                 }
-                if (left instanceof Double || right instanceof Double) {
-                    return  ((Number)left).doubleValue() + ((Number)right).doubleValue();
+                if (Numeric.isNumber(left) && Numeric.isNumber(right)) {
+                    return Numeric.add(expr.operator, left, right);
                 }
-               if (left instanceof String && right instanceof String) {
-                    return (String) left + (String) right;
-                } 
-                new RuntimeError(expr.operator, "Operands must be a number or a string.");
-                break;
+                throw new RuntimeError(expr.operator, "Operands must be a number or a string.");
 
             case AMPERSAND:
-                return left.toString() + "" + right.toString();
+                return allocate(expr.operator, Strings.of(left) + Strings.of(right));
 
         }
 
@@ -299,14 +889,361 @@ public class Interpreter implements
         return evaluate(expr.expression);
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Number)
+    Object evaluate(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private boolean condition(Expr expr) {
+        return unboxed() ? evaluateBool(expr) : isTruthy(evaluate(expr));
+    }
+
+    // Whether a condition holds: BOOLs as they are, null never, and any
+    // other value always.
+    boolean evaluateBool(Expr expr) {
+        return truthy(evaluateTagged(expr));
+    }
+
+    // Evaluates expr without boxing an INT, FLOAT, BOOL or CHAR result:
+    // returns its type and leaves it packed in bits (see ValueType.bits).
+    // Any other value is left in ref and the type is null. Values are boxed
+    // only where they leave for an Object: OUTPUT:, &, calls and frames.
+    ValueType evaluateTagged(Expr expr) {
+        if (expr instanceof Expr.Variable)
+            return variable((Expr.Variable) expr);
+        if (expr instanceof Expr.Literal)
+            return unbox(((Expr.Literal) expr).value);
+        if (expr instanceof Expr.Binary)
+            return binary((Expr.Binary) expr);
+        if (expr instanceof Expr.Assign)
+            return assign((Expr.Assign) expr);
+        if (expr instanceof Expr.Grouping)
+            return evaluateTagged(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.CacheLoad)
+            return cacheLoad((Expr.CacheLoad) expr);
+        if (expr instanceof Expr.CacheStore)
+            return cacheStore((Expr.CacheStore) expr);
+        if (expr instanceof Expr.Unary)
+            return unary((Expr.Unary) expr);
+        if (expr instanceof Expr.Logical)
+            return logical((Expr.Logical) expr);
+        if (expr instanceof Expr.Index)
+            return index((Expr.Index) expr);
+        if (expr instanceof Expr.IndexAssign)
+            return indexAssign((Expr.IndexAssign) expr);
+        return unbox(evaluate(expr));
+    }
+
+    private ValueType unbox(Object value) {
+        ValueType type = ValueType.packed(value);
+        if (type == null)
+            ref = value;
+        else
+            bits = ValueType.bits(value);
+        return type;
+    }
+
+    private Object boxed(ValueType type) {
+        return type == null ? ref : type.box(bits);
+    }
+
+    private static Object boxed(ValueType type, long bits, Object ref) {
+        return type == null ? ref : type.box(bits);
+    }
+
+    private boolean truthy(ValueType type) {
+        if (type == ValueType.BOOL)
+            return bits != 0;
+        return type != null || isTruthy(ref);
+    }
+
+    private ValueType bool(boolean value) {
+        bits = value ? 1 : 0;
+        return ValueType.BOOL;
+    }
+
+    private ValueType integer(int value) {
+        bits = value;
+        return ValueType.INT;
+    }
+
+    private ValueType floating(double value) {
+        bits = Double.doubleToRawLongBits(value);
+        return ValueType.FLOAT;
+    }
+
+    private ValueType variable(Expr.Variable expr) {
+        if (expr.slot >= 0 || !cacheLookups())
+            return unbox(visitVariableExpr(expr));
+        Environment.Resolution resolution = environment.resolve(expr.name, expr.resolution);
+        if (resolution != expr.resolution)
+            expr.resolution = resolution;
+        Environment.Binding binding = resolution.binding;
+        if (binding.kind == null)
+            ref = binding.value;
+        else
+            bits = binding.bits;
+        return binding.kind;
+    }
+
+    private ValueType assign(Expr.Assign expr) {
+        ValueType type = evaluateTagged(expr.value);
+        if (type == null || expr.slot >= 0 || !cacheLookups())
+            return unbox(assign(expr, boxed(type)));
+        Environment.Resolution resolution = environment.resolve(expr.name, expr.resolution);
+        if (resolution != expr.resolution)
+            expr.resolution = resolution;
+        Environment.assign(expr.name, resolution.binding, type, bits);
+        return type;
+    }
+
+    // The operators of Numeric and isEqual on packed operands. Anything the
+    // fast paths do not cover, errors included, is boxed and left to them.
+    private ValueType binary(Expr.Binary expr) {
+        if (expr.operator.type == TokenType.AMPERSAND) {
+            StringBuilder text = new StringBuilder();
+            concat(expr, text);
+            ref = text.toString();
+            return null;
+        }
+        ValueType leftType = evaluateTagged(expr.left);
+        long left = bits;
+        Object leftRef = ref;
+        ValueType rightType = evaluateTagged(expr.right);
+        long right = bits;
+        TokenType operator = expr.operator.type;
+
+        if (leftType == ValueType.INT && rightType == ValueType.INT) {
+            int a = (int) left;
+            int b = (int) right;
+            switch (operator) {
+                case PLUS:
+                    return integer(a + b);
+                case MINUS:
+                    return integer(a - b);
+                case STAR:
+                    return integer(a * b);
+                case SLASH:
+                    if (b == 0)
+                        throw new RuntimeError(expr.operator, "Division by zero.");
+                    return integer(a / b);
+                case MODULO:
+                    if (b == 0)
+                        throw new RuntimeError(expr.operator, "Division by zero.");
+                    return integer(a % b);
+                case GREATER:
+                    return bool(a > b);
+                case GREATER_EQUAL:
+                    return bool(a >= b);
+                case LESS:
+                    return bool(a < b);
+                case LESS_EQUAL:
+                    return bool(a <= b);
+                case EQUAL_EQUAL:
+                    return bool(a == b);
+                case BANG_EQUAL:
+                    return bool(a != b);
+            }
+        } else if (leftType != null && rightType != null) {
+            if (operator == TokenType.EQUAL_EQUAL)
+                return bool(samePacked(leftType, left, rightType, right));
+            if (operator == TokenType.BANG_EQUAL)
+                return bool(!samePacked(leftType, left, rightType, right));
+            if (leftType.isNumber() && rightType.isNumber() && operator != TokenType.MODULO) {
+                double a = leftType == ValueType.INT ? (int) left : Double.longBitsToDouble(left);
+                double b = rightType == ValueType.INT ? (int) right : Double.longBitsToDouble(right);
+                switch (operator) {
+                    case PLUS:
+                        return floating(a + b);
+                    case MINUS:
+                        return floating(a - b);
+                    case STAR:
+                        return floating(a * b);
+                    case SLASH:
+                        return floating(a / b);
+                    case GREATER:
+                        return bool(a > b);
+                    case GREATER_EQUAL:
+                        return bool(a >= b);
+                    case LESS:
+                        return bool(a < b);
+                    case LESS_EQUAL:
+                        return bool(a <= b);
+                }
+            }
+        }
+        return unbox(binary(expr, boxed(leftType, left, leftRef), boxed(rightType, right, ref)));
+    }
+
+    // Appends a chain of & to text in one go. It is charged for every STRING
+    // the &s would have built one at a time, at the same points. Returns
+    // whether text holds a char outside Latin-1, which takes two bytes a char.
+    private boolean concat(Expr.Binary expr, StringBuilder text) {
+        boolean wide = false;
+        int from = 0;
+        if (expr.left instanceof Expr.Binary && ((Expr.Binary) expr.left).operator.type == TokenType.AMPERSAND) {
+            wide = concat((Expr.Binary) expr.left, text);
+            from = text.length();
+            append(text, evaluateTagged(expr.right), bits, ref);
+        } else {
+            ValueType leftType = evaluateTagged(expr.left);
+            long left = bits;
+            Object leftRef = ref;
+            ValueType rightType = evaluateTagged(expr.right);
+            append(text, leftType, left, leftRef);
+            append(text, rightType, bits, ref);
+        }
+        wide = wide || !Strings.latin1(text, from);
+        allocate(expr.operator, wide ? 2L * text.length() : text.length());
+        return wide;
+    }
+
+    // As toString() on the boxed value, so null throws.
+    private static void append(StringBuilder text, ValueType type, long bits, Object ref) {
+        if (type == null) {
+            text.append(ref.toString());
             return;
-        throw new RuntimeError(operator, "Operand must be a number.");
+        }
+        switch (type) {
+            case INT:
+                text.append((int) bits);
+                break;
+            case FLOAT:
+                text.append(Double.longBitsToDouble(bits));
+                break;
+            case BOOL:
+                text.append(bits != 0);
+                break;
+            default:
+                text.append((char) bits);
+                break;
+        }
     }
 
-    private Object evaluate(Expr expr) {
-        return expr.accept(this);
+    // isEqual for packed values, which is equals on their boxes.
+    private static boolean samePacked(ValueType leftType, long left, ValueType rightType, long right) {
+        if (leftType != rightType)
+            return false;
+        if (leftType == ValueType.FLOAT)
+            return Double.doubleToLongBits(Double.longBitsToDouble(left))
+                    == Double.doubleToLongBits(Double.longBitsToDouble(right));
+        return left == right;
+    }
+
+    private ValueType unary(Expr.Unary expr) {
+        ValueType type = evaluateTagged(expr.right);
+        switch (expr.operator.type) {
+            case NOT:
+            case BANG:
+                return bool(!truthy(type));
+            case MINUS:
+                if (type == ValueType.INT)
+                    return integer(-(int) bits);
+                if (type == ValueType.FLOAT)
+                    return floating(-Double.longBitsToDouble(bits));
+                return unbox(Numeric.negate(expr.operator, boxed(type)));
+        }
+
+        // Unreachable.
+        return unbox(null);
+    }
+
+    // The operand that decides is the result, whatever its type.
+    private ValueType logical(Expr.Logical expr) {
+        ValueType left = evaluateTagged(expr.left);
+        if (expr.operator.type == TokenType.OR && truthy(left))
+            return left;
+        if (expr.operator.type == TokenType.AND && !truthy(left))
+            return left;
+        return evaluateTagged(expr.right);
+    }
+
+    private ValueType index(Expr.Index expr) {
+        CfplArray array = array(expr.bracket, evaluate(expr.array));
+        int index = index(array, expr.bracket, expr.index);
+        bits = array.bits(index);
+        return array.element();
+    }
+
+    private ValueType indexAssign(Expr.IndexAssign expr) {
+        CfplArray array = array(expr.bracket, evaluate(expr.array));
+        int index = index(array, expr.bracket, expr.index);
+        ValueType type = evaluateTagged(expr.value);
+        if (type == null ? !array.set(index, ref) : !array.set(index, type, bits))
+            throw cannotHold(expr.bracket, array, boxed(type));
+        return type;
+    }
+
+    private int index(CfplArray array, Token bracket, Expr index) {
+        ValueType type = evaluateTagged(index);
+        if (type == ValueType.INT)
+            return array.index(bracket, (int) bits);
+        return array.index(bracket, boxed(type));
+    }
+
+    private ValueType cacheStore(Expr.CacheStore expr) {
+        ValueType type = evaluateTagged(expr.expression);
+        temporaryTypes[expr.slot] = type;
+        if (type == null)
+            temporaries[expr.slot] = ref;
+        else
+            temporaryBits[expr.slot] = bits;
+        return type;
+    }
+
+    private ValueType cacheLoad(Expr.CacheLoad expr) {
+        ValueType type = temporaryTypes[expr.slot];
+        if (type == null)
+            ref = temporaries[expr.slot];
+        else
+            bits = temporaryBits[expr.slot];
+        return type;
+    }
+
+    // Variable access and I/O go through these so InstrumentedInterpreter can
+    // observe them; in a plain Interpreter they inline away.
+    Object lookUp(Token name) {
+        return environment.get(name);
+    }
+
+    void assign(Token name, Object value) {
+        environment.assign(name, value);
+    }
+
+    void define(Token name, Object value) {
+        environment.define(name.lexeme, value, name.line);
+    }
+
+    Environment environment() {
+        return environment;
+    }
+
+    boolean isFunction(String name) {
+        return functions.containsKey(name);
+    }
+
+    Object local(Token name, int slot) {
+        return frame[slot];
+    }
+
+    void assignLocal(Token name, int slot, Object value) {
+        Object current = frame[slot];
+        if (value != null && current != null && current.getClass() != value.getClass()) {
+            throw new RuntimeError(name, name.lexeme + " expects " + current.getClass().getSimpleName()
+                    + " but received " + value.getClass().getSimpleName() + " instead.");
+        }
+        frame[slot] = value;
+    }
+
+    void defineLocal(Token name, int slot, Object value) {
+        frame[slot] = value;
+    }
+
+    void output(String text) {
+        out.println(text);
+    }
+
+    String readInput() throws IOException {
+        return inputSource.readLine();
     }
 
 
@@ -314,72 +1251,36 @@ public class Interpreter implements
         if (object == null)
             return "null";
 
-        return object.toString();
+        return Strings.of(object);
     }
 
     @Override
     public Void visitInputStmt(Stmt.Input input) {
 
-        System.out.println("[Input]");
-
-        InputStreamReader inputStreamReader = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(inputStreamReader);
+        if (inputSource.prompts())
+            out.println("[Input]");
 
         String inputs;
 
         try {
-            // [1, 2]
-            inputs = reader.readLine();
-            String[] values = inputs.split(",");
-        
-            if (inputs == null || values.length != input.tokens.size()) {
-                CFPL.error(input.tokens.get(0), "Error you did not enter values");
-
+            inputs = readInput();
+            String[] values = InputValues.split(diagnostics, input.tokens, inputs);
+            if (values == null)
                 return null;
-            }
 
             for (int i = 0; i < input.tokens.size(); i++) {
-                Object fValue = values[i]; // int
-                String value = values[i];
                 Token t = input.tokens.get(i);
-                Expr.Variable var = new Expr.Variable(t); // variable a 
-                Object currValue = environment.get(var.name); // 
-
-                
-
-                if (currValue != null) {
-                    String dataType = currValue.getClass().getSimpleName();
-                    try {
-                        if (currValue instanceof Integer) {
-                            fValue = Integer.valueOf(value);
-                        } else if (currValue instanceof Double) {
-                            fValue = Double.parseDouble(value);
-                        } else if (currValue instanceof Character) {
-                            if (value.length() > 1) {
-                                throw new RuntimeError(var.name, "Expected a character");
-                            } else if (value.length() == 1) {
-                                fValue = value.charAt(0);
-                            }
-                        } else if (currValue instanceof Boolean) {
-                            if (value.contains("TRUE"));
-                                fValue = true;
-                            if (value.contains("FALSE"));
-                                fValue = false;
-                        }
-                    } catch (ClassCastException | NumberFormatException e) {
-                        CFPL.runtimeError(new RuntimeError(var.name, "Error: Incorrect Datatype"));
-                        fValue = getDataType(fValue);
-                        
-                    }
-                }
-                // System.out.println("debug cV: " + currValue);
-                // System.out.println("debug fV: " + fValue);
-                // System.out.println("debug V: " + value);
-                environment.assign(var.name, fValue); 
+                int slot = input.slots == null ? -1 : input.slots[i];
+                Object currValue = slot >= 0 ? local(t, slot) : lookUp(t);
+                Object fValue = InputValues.convert(diagnostics, t, currValue, values[i]);
+                if (slot >= 0)
+                    assignLocal(t, slot, fValue);
+                else
+                    assign(t, fValue);
             }
         } catch (NullPointerException | IOException e) {
             // TODO Auto-generated catch block
-            System.out.println(e);
+            out.println(e);
         }
 
         
@@ -387,29 +1288,4 @@ public class Interpreter implements
         
         return null;
     }
-
-    private Object getDataType (Object value) {
-        String objStr = value.toString();
-        if (objStr.length() == 1)
-            return objStr.charAt(0);
-        if (objStr.length() > 1) {
-            if (objStr.toLowerCase().equals("true"))
-                return true;
-            else if (objStr.toLowerCase().equals("false"))
-                return false;
-            else if (objStr.contains(".") && isAllDigit(objStr.substring(objStr.indexOf('.') + 1)) )
-                return Double.parseDouble(objStr);
-            else return objStr;
-        }
-
-        return ((Number)value);
-    }
-   
-    Boolean isAllDigit(String str) {
-        for (int i = 0; i < str.length(); i++) {
-            if (!Character.isDigit(str.charAt(i)))
-                return false;
-        }
-        return true;
-    }
 }
@@ -0,0 +1,742 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Translates a parsed program into the source of one Java class for cfplc.
+// Every variable becomes a Java variable of its declared type, so programs
+// must type check statically: what the interpreter would only reject when it
+// gets there (an undefined variable, a FLOAT stored into an INT, comparing
+// CHARs) is a compile error here, reported at the statement's line.
+// Top-level VARs become static fields, FUNs static methods and everything
+// else runs in run(). CFPL names are suffixed with '$', which no CFPL or
+// Java keyword contains, to keep them apart from the generated ones.
+class JavaGenerator implements Stmt.Visitor<Void>, Expr.Visitor<JavaGenerator.Code> {
+    static final String CLASS_NAME = "CompiledScript";
+
+    // The Java type of values of a type.
+    private static String java(ValueType type) {
+        switch (type) {
+            case INT:
+                return "int";
+            case FLOAT:
+                return "double";
+            case BOOL:
+                return "boolean";
+            case CHAR:
+                return "char";
+            case STRING:
+                return "String";
+            case INT_ARRAY:
+                return "CfplArray.IntArray";
+            case FLOAT_ARRAY:
+                return "CfplArray.FloatArray";
+            case BOOL_ARRAY:
+                return "CfplArray.BoolArray";
+            case CHAR_ARRAY:
+                return "CfplArray.CharArray";
+            default:
+                return "void";
+        }
+    }
+
+    // A Java expression and the type of its value.
+    static final class Code {
+        final String text;
+        final ValueType kind;
+
+        Code(String text, ValueType kind) {
+            this.text = text;
+            this.kind = kind;
+        }
+    }
+
+    private static final class Variable {
+        final String java;
+        final ValueType kind;
+
+        Variable(String java, ValueType kind) {
+            this.java = java;
+            this.kind = kind;
+        }
+    }
+
+    private static class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    private final Diagnostics diagnostics;
+    private final StringBuilder fields = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private StringBuilder out;
+    private int indent;
+    private int line;
+    private int tokens = 0;
+    private int locals = 0;
+
+    private final Map<String, Stmt.Function> functions = new HashMap<>();
+    private final Map<String, Variable> globals = new LinkedHashMap<>();
+    // Innermost first; empty in top-level code.
+    private final Deque<Map<String, Variable>> scopes = new ArrayDeque<>();
+    private Stmt.Function function;
+
+    JavaGenerator(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    // The class's source, or null after reporting why the program cannot be compiled.
+    String generate(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Function)
+                functions.put(((Stmt.Function) statement).name.lexeme, (Stmt.Function) statement);
+        }
+
+        StringBuilder run = new StringBuilder();
+        try {
+            out = run;
+            indent = 2;
+            for (Stmt statement : statements)
+                execute(statement);
+            for (Stmt statement : statements) {
+                if (statement instanceof Stmt.Function)
+                    function((Stmt.Function) statement);
+            }
+        } catch (Unsupported error) {
+            diagnostics.error(line, error.getMessage());
+            return null;
+        }
+
+        StringBuilder java = new StringBuilder();
+        java.append("package com.craftingcfpl.CFPL;\n\n");
+        java.append("final class ").append(CLASS_NAME).append(" {\n");
+        java.append("    private static final java.io.PrintStream out = CompiledRuntime.output();\n");
+        java.append("    private static final Diagnostics diagnostics = new Diagnostics(System.err);\n");
+        // Not constants, so javac never sees through IF (TRUE) or a RETURN
+        // followed by more statements and rejects the code as unreachable.
+        java.append("    private static boolean TRUE = true;\n");
+        java.append("    private static boolean FALSE = false;\n");
+        java.append(fields);
+        for (Variable global : globals.values())
+            java.append("    private static ").append(java(global.kind)).append(' ').append(global.java).append(";\n");
+        java.append("\n    public static void main(String[] args) {\n");
+        java.append("        CompiledRuntime.run(").append(CLASS_NAME).append("::run, out, diagnostics);\n");
+        java.append("    }\n\n");
+        java.append("    private static void run() {\n");
+        java.append(run);
+        java.append("    }\n");
+        java.append(methods);
+        java.append("}\n");
+        return java.toString();
+    }
+
+    private void function(Stmt.Function stmt) {
+        function = stmt;
+        line = stmt.line;
+        out = methods;
+        ValueType result = stmt.returnType == null ? ValueType.VOID : ValueType.of(stmt.returnType.type, false);
+        scopes.push(new HashMap<>());
+        StringBuilder params = new StringBuilder("Token site");
+        StringBuilder arguments = new StringBuilder("site");
+        for (Stmt.Var param : stmt.params) {
+            Variable variable = declare(param.name, ValueType.of(param.dataType.type, false));
+            params.append(", ").append(java(variable.kind)).append(' ').append(variable.java);
+            arguments.append(", ").append(variable.java);
+        }
+
+        String name = stmt.name.lexeme + "$";
+        if (stmt.memoize) {
+            memoized(stmt, name, result, params.toString(), arguments.toString());
+            name = name + "$";
+        }
+
+        indent = 1;
+        emit("");
+        emit("private static " + java(result) + " " + name + "(" + params + ") {");
+        indent++;
+        emit("try {");
+        indent++;
+        for (Stmt.Var local : stmt.locals)
+            execute(local);
+        // Like the Resolver, the body shares the scope of the parameters.
+        emit("if (TRUE) {");
+        indent++;
+        for (Stmt statement : stmt.body.statements)
+            execute(statement);
+        indent--;
+        emit("}");
+        if (result != ValueType.VOID)
+            emit("throw CompiledRuntime.noReturn(" + token(stmt.name) + ");");
+        indent--;
+        // Reported at the deepest call, as by the interpreter.
+        emit("} catch (StackOverflowError e) {");
+        emit("    throw CompiledRuntime.stackOverflow(site);");
+        emit("}");
+        indent--;
+        emit("}");
+        scopes.pop();
+        function = null;
+    }
+
+    // Calls go through a wrapper that looks the arguments up in a MemoCache,
+    // as Interpreter.call does.
+    private void memoized(Stmt.Function stmt, String name, ValueType result, String params, String arguments) {
+        String memo = "M" + stmt.id;
+        TokenType[] types = new TokenType[stmt.params.size()];
+        StringBuilder typeNames = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < types.length; i++) {
+            Stmt.Var param = stmt.params.get(i);
+            types[i] = param.dataType.type;
+            typeNames.append(i == 0 ? "" : ", ").append("TokenType.").append(types[i]);
+            values.append(i == 0 ? "" : ", ").append(lookUp(param.name).java);
+        }
+        fields.append("    private static final MemoCache ").append(memo)
+                .append(" = new MemoCache(").append(typeNames).append(");\n");
+        boolean packed = new MemoCache(types).packed();
+
+        indent = 1;
+        emit("");
+        emit("private static " + java(result) + " " + name + "(" + params + ") {");
+        indent++;
+        emit("Object[] arguments = {" + values + "};");
+        if (packed)
+            emit("long key = " + memo + ".key(arguments);");
+        else
+            emit("java.util.List<Object> key = " + memo + ".tuple(arguments);");
+        emit("Object result = " + memo + ".get(key);");
+        emit("if (result == null) {");
+        emit("    result = " + name + "$(" + arguments + ");");
+        emit("    " + memo + ".put(key, result);");
+        emit("}");
+        emit("return (" + java(result) + ") result;");
+        indent--;
+        emit("}");
+    }
+
+    private void emit(String text) {
+        for (int i = 0; i < indent && !text.isEmpty(); i++)
+            out.append("    ");
+        out.append(text).append('\n');
+    }
+
+    // A static Token for errors reported at this token's line.
+    private String token(Token token) {
+        String name = "T" + tokens++;
+        fields.append("    private static final Token ").append(name).append(" = new Token(TokenType.")
+                .append(token.type).append(", ").append(quote(token.lexeme)).append(", null, ")
+                .append(token.line).append(");\n");
+        return name;
+    }
+
+    private Variable declare(Token name, ValueType kind) {
+        Map<String, Variable> scope = scopes.isEmpty() ? globals : scopes.peek();
+        if (scope.containsKey(name.lexeme))
+            throw new Unsupported(name.lexeme + " is already defined!");
+        String java = scopes.isEmpty() ? name.lexeme + "$" : name.lexeme + "$" + ++locals;
+        Variable variable = new Variable(java, kind);
+        scope.put(name.lexeme, variable);
+        return variable;
+    }
+
+    private Variable lookUp(Token name) {
+        for (Map<String, Variable> scope : scopes) {
+            Variable variable = scope.get(name.lexeme);
+            if (variable != null)
+                return variable;
+        }
+        Variable variable = globals.get(name.lexeme);
+        if (variable == null)
+            throw new Unsupported("Undefined variable '" + name.lexeme + "'.");
+        return variable;
+    }
+
+    private void execute(Stmt stmt) {
+        line = stmt.line;
+        stmt.accept(this);
+    }
+
+    private Code evaluate(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // A value that has to be there, for an operator or a variable.
+    private Code value(Expr expr) {
+        Code code = evaluate(expr);
+        if (code.kind == ValueType.VOID)
+            throw new Unsupported("Expected a value, but the function returns none.");
+        return code;
+    }
+
+    // The value converted for a variable, parameter or result of type kind:
+    // FLOAT takes INTs, everything else needs its own type.
+    private String convert(Code value, ValueType kind, String what) {
+        if (value.kind == kind)
+            return value.text;
+        if (kind == ValueType.FLOAT && value.kind == ValueType.INT)
+            return "(double) " + value.text;
+        throw new Unsupported(what + " expects " + kind + " but gets " + value.kind + ".");
+    }
+
+    private String condition(Expr expr) {
+        Code code = value(expr);
+        if (code.kind == ValueType.BOOL)
+            return code.text;
+        return "CompiledRuntime.isTruthy(" + code.text + ")";
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        // Java only takes assignments and calls as statements.
+        Expr expr = stmt.expression;
+        if (expr instanceof Expr.Call) {
+            emit(call((Expr.Call) expr).text + ";");
+            return null;
+        }
+        String text = evaluate(expr).text;
+        if (expr instanceof Expr.Assign || expr instanceof Expr.IndexAssign)
+            emit((text.startsWith("(") ? text.substring(1, text.length() - 1) : text) + ";");
+        else
+            emit("CompiledRuntime.discard(" + text + ");");
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        emit("out.println(String.valueOf(" + value(stmt.expression).text + "));");
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        ValueType kind = ValueType.of(stmt.dataType.type, stmt.size != null);
+        String value;
+        if (stmt.size != null) {
+            Code size = value(stmt.size);
+            if (size.kind != ValueType.INT)
+                throw new Unsupported("Array size must be a non-negative INT.");
+            value = "(" + java(kind) + ") CompiledRuntime.array(" + token(stmt.name) + ", TokenType."
+                    + stmt.dataType.type + ", " + size.text + ")";
+        } else if (stmt.initializer != null) {
+            value = convert(value(stmt.initializer), kind, stmt.name.lexeme);
+        } else {
+            switch (kind) {
+                case INT:
+                    value = "0";
+                    break;
+                case FLOAT:
+                    value = "0.0";
+                    break;
+                case BOOL:
+                    value = "false";
+                    break;
+                case CHAR:
+                    value = "' '";
+                    break;
+                default:
+                    throw new Unsupported(stmt.name.lexeme + " needs an initial value.");
+            }
+        }
+
+        boolean global = scopes.isEmpty();
+        Variable variable = declare(stmt.name, kind);
+        emit((global ? "" : java(kind) + " ") + variable.java + " = " + value + ";");
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        emit("{");
+        indent++;
+        scopes.push(new HashMap<>());
+        for (Stmt statement : stmt.statements)
+            execute(statement);
+        scopes.pop();
+        indent--;
+        emit("}");
+        return null;
+    }
+
+    @Override
+    public Void visitExecutableStmt(Stmt.Executable stmt) {
+        for (Stmt statement : stmt.statements)
+            execute(statement);
+        return null;
+    }
+
+    // Reads the line, splits and converts it with InputValues and type checks
+    // every value against its variable, like Interpreter.visitInputStmt.
+    @Override
+    public Void visitInputStmt(Stmt.Input stmt) {
+        StringBuilder names = new StringBuilder();
+        for (Token name : stmt.tokens)
+            names.append(names.length() == 0 ? "" : ", ").append(token(name));
+        String list = "T" + tokens++;
+        fields.append("    private static final java.util.List<Token> ").append(list)
+                .append(" = java.util.Arrays.asList(").append(names).append(");\n");
+
+        emit("out.println(\"[Input]\");");
+        emit("try {");
+        indent++;
+        emit("String[] values = InputValues.split(diagnostics, " + list + ", CompiledRuntime.readLine(out));");
+        emit("if (values != null) {");
+        indent++;
+        for (int i = 0; i < stmt.tokens.size(); i++) {
+            Token name = stmt.tokens.get(i);
+            Variable variable = lookUp(name);
+            if (variable.kind.isArray())
+                throw new Unsupported("INPUT: cannot read into the array " + name.lexeme + ".");
+            String boxed = variable.kind == ValueType.STRING ? "String" : java(variable.kind);
+            emit(variable.java + " = (" + boxed + ") CompiledRuntime.input(diagnostics, " + list + ".get(" + i
+                    + "), " + variable.java + ", values[" + i + "]);");
+        }
+        indent--;
+        emit("}");
+        indent--;
+        emit("} catch (NullPointerException | java.io.IOException e) {");
+        emit("    out.println(e);");
+        emit("}");
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        emit("if (" + condition(stmt.condition) + ") {");
+        branch(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            emit("} else {");
+            branch(stmt.elseBranch);
+        }
+        emit("}");
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        emit("while (" + condition(stmt.condition) + ") {");
+        branch(stmt.body);
+        emit("}");
+        return null;
+    }
+
+    private void branch(Stmt stmt) {
+        indent++;
+        execute(stmt);
+        indent--;
+    }
+
+    @Override
+    public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+        // Compiled loops are fast enough on one thread; the iterations run in order.
+        execute(stmt.sequential);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        // Becomes a method once run() is done.
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) {
+            emit("if (TRUE) return;");
+            return null;
+        }
+        ValueType result = ValueType.of(function.returnType.type, false);
+        emit("if (TRUE) return " + convert(value(stmt.value), result, function.name.lexeme + "'s result") + ";");
+        return null;
+    }
+
+    @Override
+    public Code visitAssignExpr(Expr.Assign expr) {
+        Code value = value(expr.value);
+        Variable variable = lookUp(expr.name);
+        if (value.kind.isArray() || variable.kind.isArray())
+            throw new Unsupported("Arrays cannot be assigned, use COPY.");
+        if (value.kind != variable.kind)
+            throw new Unsupported(expr.name.lexeme + " expects " + variable.kind + " but gets " + value.kind + ".");
+        return new Code("(" + variable.java + " = " + value.text + ")", variable.kind);
+    }
+
+    @Override
+    public Code visitBinaryExpr(Expr.Binary expr) {
+        Code left = value(expr.left);
+        Code right = value(expr.right);
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case EQUAL_EQUAL:
+                return new Code(equal(left, right), ValueType.BOOL);
+            case BANG_EQUAL:
+                return new Code("!" + equal(left, right), ValueType.BOOL);
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                numbers(left, right, "Operands must be numbers.");
+                return new Code("(" + left.text + " " + operator.lexeme + " " + right.text + ")", ValueType.BOOL);
+            case PLUS:
+                if (left.kind == ValueType.STRING && right.kind == ValueType.STRING)
+                    return new Code("(" + left.text + " + " + right.text + ")", ValueType.STRING);
+                numbers(left, right, "Operands must be a number or a string.");
+                return arithmetic("+", left, right);
+            case MINUS:
+                numbers(left, right, "Operands must be numbers.");
+                return arithmetic("-", left, right);
+            case STAR:
+                numbers(left, right, "Operands must be numbers.");
+                return arithmetic("*", left, right);
+            case SLASH:
+                numbers(left, right, "Operands must be numbers.");
+                if (left.kind == ValueType.INT && right.kind == ValueType.INT) {
+                    return new Code("CompiledRuntime.divide(" + token(operator) + ", " + left.text + ", "
+                            + right.text + ")", ValueType.INT);
+                }
+                return arithmetic("/", left, right);
+            case MODULO:
+                if (left.kind != ValueType.INT || right.kind != ValueType.INT)
+                    throw new Unsupported("Modulo only accepts two integers!");
+                return new Code("CompiledRuntime.modulo(" + token(operator) + ", " + left.text + ", "
+                        + right.text + ")", ValueType.INT);
+            case AMPERSAND:
+                return new Code("(\"\" + " + left.text + " + " + right.text + ")", ValueType.STRING);
+            default:
+                throw new Unsupported("Unknown operator '" + operator.lexeme + "'.");
+        }
+    }
+
+    private static void numbers(Code left, Code right, String message) {
+        if (!left.kind.isNumber() || !right.kind.isNumber())
+            throw new Unsupported(message);
+    }
+
+    // INT with INT stays INT, anything with a FLOAT is FLOAT, as in Numeric.
+    private static Code arithmetic(String operator, Code left, Code right) {
+        ValueType kind = left.kind == ValueType.INT && right.kind == ValueType.INT ? ValueType.INT : ValueType.FLOAT;
+        return new Code("(" + left.text + " " + operator + " " + right.text + ")", kind);
+    }
+
+    // Interpreter.isEqual is equals(): values of different types are never
+    // equal, FLOATs compare by their bits and arrays by identity.
+    private static String equal(Code left, Code right) {
+        if (left.kind != right.kind)
+            return "CompiledRuntime.isEqual(" + left.text + ", " + right.text + ")";
+        switch (left.kind) {
+            case FLOAT:
+                return "CompiledRuntime.sameFloat(" + left.text + ", " + right.text + ")";
+            case STRING:
+                return "(" + left.text + ".equals(" + right.text + "))";
+            default:
+                return "(" + left.text + " == " + right.text + ")";
+        }
+    }
+
+    @Override
+    public Code visitGroupingExpr(Expr.Grouping expr) {
+        Code code = evaluate(expr.expression);
+        return new Code("(" + code.text + ")", code.kind);
+    }
+
+    @Override
+    public Code visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Integer)
+            return new Code(value.toString(), ValueType.INT);
+        if (value instanceof Double)
+            return new Code(value.toString(), ValueType.FLOAT);
+        if (value instanceof Boolean)
+            return new Code((boolean) value ? "TRUE" : "FALSE", ValueType.BOOL);
+        if (value instanceof Character)
+            return new Code("((char) " + (int) (char) value + ")", ValueType.CHAR);
+        if (value instanceof String)
+            return new Code(quote((String) value), ValueType.STRING);
+        throw new Unsupported("NIL has no type in a compiled program.");
+    }
+
+    @Override
+    public Code visitUnaryExpr(Expr.Unary expr) {
+        Code right = value(expr.right);
+        if (expr.operator.type == TokenType.MINUS) {
+            if (!right.kind.isNumber())
+                throw new Unsupported("Operand must be a number.");
+            return new Code("(-" + right.text + ")", right.kind);
+        }
+        if (right.kind == ValueType.BOOL)
+            return new Code("(!" + right.text + ")", ValueType.BOOL);
+        return new Code("(!CompiledRuntime.isTruthy(" + right.text + "))", ValueType.BOOL);
+    }
+
+    @Override
+    public Code visitVariableExpr(Expr.Variable expr) {
+        Variable variable = lookUp(expr.name);
+        return new Code(variable.java, variable.kind);
+    }
+
+    // Only BOOL operands: the interpreter hands back the operand itself,
+    // whose type could then depend on which side was taken.
+    @Override
+    public Code visitLogicalExpr(Expr.Logical expr) {
+        Code left = value(expr.left);
+        Code right = value(expr.right);
+        if (left.kind != ValueType.BOOL || right.kind != ValueType.BOOL)
+            throw new Unsupported(expr.operator.lexeme + " needs BOOL operands in a compiled program.");
+        String operator = expr.operator.type == TokenType.AND ? " && " : " || ";
+        return new Code("(" + left.text + operator + right.text + ")", ValueType.BOOL);
+    }
+
+    // Arrays only ever live in variables, so the array's code is a name that
+    // can be repeated.
+    private Code array(Expr expr) {
+        Code array = value(expr);
+        if (!array.kind.isArray())
+            throw new Unsupported("Only arrays can be indexed.");
+        return array;
+    }
+
+    // The bounds checked index.
+    private String index(Token bracket, Code array, Expr expr) {
+        Code index = value(expr);
+        if (index.kind != ValueType.INT)
+            throw new Unsupported("Array index must be an INT.");
+        return "CompiledRuntime.index(" + token(bracket) + ", " + array.text + ", " + index.text + ")";
+    }
+
+    @Override
+    public Code visitIndexExpr(Expr.Index expr) {
+        Code array = array(expr.array);
+        return new Code(array.text + ".values[" + index(expr.bracket, array, expr.index) + "]",
+                array.kind.element());
+    }
+
+    @Override
+    public Code visitIndexAssignExpr(Expr.IndexAssign expr) {
+        Code array = array(expr.array);
+        String index = index(expr.bracket, array, expr.index);
+        Code value = value(expr.value);
+        ValueType kind = array.kind.element();
+        if (kind == ValueType.FLOAT && value.kind == ValueType.INT) {
+            // The INT is stored widened but stays the expression's value.
+            return new Code("CompiledRuntime.store(" + array.text + ".values, " + index + ", " + value.text + ")",
+                    ValueType.INT);
+        }
+        if (value.kind != kind)
+            throw new Unsupported(array.kind + " cannot hold " + value.kind + ".");
+        return new Code("(" + array.text + ".values[" + index + "] = " + value.text + ")", kind);
+    }
+
+    @Override
+    public Code visitCallExpr(Expr.Call expr) {
+        Code call = call(expr);
+        if (call.kind == ValueType.VOID || functions.containsKey(expr.name.lexeme))
+            return call;
+        // Built-ins hand back a boxed value.
+        return new Code("((" + java(call.kind) + ") " + call.text + ")", call.kind);
+    }
+
+    private Code call(Expr.Call expr) {
+        Token name = expr.name;
+        Stmt.Function callee = functions.get(name.lexeme);
+        if (callee == null)
+            return builtin(expr);
+
+        List<Stmt.Var> params = callee.params;
+        if (expr.arguments.size() != params.size()) {
+            throw new Unsupported(name.lexeme + " expects " + params.size() + " argument"
+                    + (params.size() == 1 ? "" : "s") + " but got " + expr.arguments.size() + ".");
+        }
+        StringBuilder arguments = new StringBuilder(token(name));
+        for (int i = 0; i < params.size(); i++) {
+            Stmt.Var param = params.get(i);
+            arguments.append(", ").append(convert(value(expr.arguments.get(i)),
+                    ValueType.of(param.dataType.type, false), param.name.lexeme));
+        }
+        ValueType result = callee.returnType == null ? ValueType.VOID : ValueType.of(callee.returnType.type, false);
+        return new Code(name.lexeme + "$(" + arguments + ")", result);
+    }
+
+    // Arguments are checked by Builtins.call itself; only the type of the
+    // result has to be known here.
+    private Code builtin(Expr.Call expr) {
+        Token name = expr.name;
+        if (!Builtins.isBuiltin(name.lexeme))
+            throw new Unsupported("Undefined function '" + name.lexeme + "'.");
+        StringBuilder arguments = new StringBuilder(token(name));
+        ValueType first = null;
+        for (Expr argument : expr.arguments) {
+            Code code = value(argument);
+            if (first == null)
+                first = code.kind;
+            arguments.append(", ").append(code.text);
+        }
+
+        ValueType result;
+        switch (name.lexeme) {
+            case "LENGTH":
+            case "COUNT":
+                result = ValueType.INT;
+                break;
+            case "SUM":
+            case "MIN":
+            case "MAX":
+            case "DOT":
+                if (first != ValueType.INT_ARRAY && first != ValueType.FLOAT_ARRAY)
+                    throw new Unsupported(name.lexeme + " expects INT or FLOAT arrays.");
+                result = first.element();
+                break;
+            default:
+                result = ValueType.VOID;
+                break;
+        }
+        return new Code("CompiledRuntime.call(" + arguments + ")", result);
+    }
+
+    @Override
+    public Code visitCacheStoreExpr(Expr.CacheStore expr) {
+        throw new Unsupported("cfplc compiles unoptimized programs.");
+    }
+
+    @Override
+    public Code visitCacheLoadExpr(Expr.CacheLoad expr) {
+        throw new Unsupported("cfplc compiles unoptimized programs.");
+    }
+
+    static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    // Octal, since a \\u escape would be read before the string is.
+                    if (c < ' ' || c == 0x7f)
+                        quoted.append(String.format("\\%03o", (int) c));
+                    else
+                        quoted.append(c);
+                    break;
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,305 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// A WHILE loop compiled by TraceCompiler: its condition and body as closures
+// over typed registers instead of Environments and boxed values.
+//
+// A loop gets one after TRACE_THRESHOLD back-edges: the next iteration runs
+// in the tree walker while a Recording notes which IF arms it takes, and the
+// trace is compiled at the back-edge after it. From then on every back-edge
+// enters the trace, which runs the remaining iterations itself:
+// - Entry guards check that the loop's variables still have the types the
+//   trace was compiled for; if not, the iteration stays in the tree walker.
+// - An IF arm the recording never saw is a side exit. The trace writes its
+//   registers back, finishes the iteration in the tree walker and is
+//   recompiled with that arm included.
+// Statements are charged to the budget as in the tree walker, so limits and
+// statement counts do not change.
+final class LoopTrace {
+    static final int TRACE_THRESHOLD = 64;
+    // Recompiles after side exits, and entries refused by guards, before the
+    // loop is left to the tree walker for good.
+    private static final int MAX_GENERATIONS = 16;
+    private static final int MAX_MISSES = 16;
+
+    interface IntCode {
+        int run(Registers registers);
+    }
+
+    interface FloatCode {
+        double run(Registers registers);
+    }
+
+    interface BoolCode {
+        boolean run(Registers registers);
+    }
+
+    interface ObjectCode {
+        Object run(Registers registers);
+    }
+
+    interface Step {
+        void run(Registers registers);
+    }
+
+    // INT and CHAR values live in ints, STRINGs and arrays in objects. The
+    // trace is kept on the loop and shared by every run of the program, so
+    // the interpreter of the run it is serving comes with the registers.
+    static final class Registers {
+        final Interpreter interpreter;
+        final int[] ints;
+        final double[] floats;
+        final boolean[] bools;
+        final Object[] objects;
+
+        Registers(Interpreter interpreter, int ints, int floats, int bools, int objects) {
+            this.interpreter = interpreter;
+            this.ints = new int[ints];
+            this.floats = new double[floats];
+            this.bools = new boolean[bools];
+            this.objects = new Object[objects];
+        }
+    }
+
+    // A variable, by frame slot inside a function and by name otherwise, or
+    // the result of a CacheStore, in a register.
+    static final class Variable {
+        final Token name;
+        final int slot;
+        final ValueType type;
+        final int register;
+        boolean assigned;
+
+        Variable(Token name, int slot, ValueType type, int register) {
+            this.name = name;
+            this.slot = slot;
+            this.type = type;
+            this.register = register;
+        }
+
+        Object get(Registers registers) {
+            switch (type) {
+                case INT:
+                    return registers.ints[register];
+                case CHAR:
+                    return (char) registers.ints[register];
+                case FLOAT:
+                    return registers.floats[register];
+                case BOOL:
+                    return registers.bools[register];
+                default:
+                    return registers.objects[register];
+            }
+        }
+
+        void set(Registers registers, Object value) {
+            switch (type) {
+                case INT:
+                    registers.ints[register] = (int) value;
+                    break;
+                case CHAR:
+                    registers.ints[register] = (char) value;
+                    break;
+                case FLOAT:
+                    registers.floats[register] = (double) value;
+                    break;
+                case BOOL:
+                    registers.bools[register] = (boolean) value;
+                    break;
+                default:
+                    registers.objects[register] = value;
+                    break;
+            }
+        }
+    }
+
+    // A block around a side exit and the index of the statement holding it.
+    static final class Frame {
+        final Stmt.Block block;
+        final int index;
+
+        Frame(Stmt.Block block, int index) {
+            this.block = block;
+            this.index = index;
+        }
+    }
+
+    // Thrown by an IF whose condition picked an arm the trace does not have.
+    // Preallocated per IF and without a stack trace.
+    static final class SideExit extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final Stmt.If branch;
+        final boolean then;
+        // Outermost first.
+        final Frame[] frames;
+
+        SideExit(Stmt.If branch, boolean then, Frame[] frames) {
+            super(null, null, false, false);
+            this.branch = branch;
+            this.then = then;
+            this.frames = frames;
+        }
+    }
+
+    // The IF arms taken while a loop is recorded.
+    static final class Recording {
+        final Stmt.While loop;
+        final Set<Stmt.If> thenTaken = new HashSet<>();
+        final Set<Stmt.If> elseTaken = new HashSet<>();
+
+        Recording(Stmt.While loop) {
+            this.loop = loop;
+        }
+
+        void took(Stmt.If branch, boolean then) {
+            (then ? thenTaken : elseTaken).add(branch);
+        }
+    }
+
+    private final Stmt.While loop;
+    private final Variable[] variables;
+    private final int ints;
+    private final int floats;
+    private final int bools;
+    private final int objects;
+    private final BoolCode condition;
+    private final Step body;
+    final Set<Stmt.If> thenTaken;
+    final Set<Stmt.If> elseTaken;
+    final int generation;
+    private int misses = 0;
+
+    LoopTrace(Stmt.While loop, List<Variable> variables, int ints, int floats, int bools, int objects,
+            BoolCode condition, Step body, Set<Stmt.If> thenTaken, Set<Stmt.If> elseTaken,
+            int generation) {
+        this.loop = loop;
+        this.variables = variables.toArray(new Variable[0]);
+        this.ints = ints;
+        this.floats = floats;
+        this.bools = bools;
+        this.objects = objects;
+        this.condition = condition;
+        this.body = body;
+        this.thenTaken = thenTaken;
+        this.elseTaken = elseTaken;
+        this.generation = generation;
+    }
+
+    // Called by Interpreter.visitWhileStmt at a back-edge of a hot loop.
+    // Returns true if the trace has run the loop to its end.
+    static boolean onBackEdge(Interpreter interpreter, Stmt.While loop) {
+        Recording recording = interpreter.recording;
+        if (recording != null) {
+            if (recording.loop != loop)
+                return false;
+            interpreter.recording = null;
+            loop.trace = TraceCompiler.compile(interpreter, loop, recording.thenTaken, recording.elseTaken, 0);
+            if (loop.trace == null) {
+                loop.untraceable = true;
+                return false;
+            }
+        }
+
+        LoopTrace trace = loop.trace;
+        if (trace == null) {
+            // Only record loops that can be compiled at all.
+            Set<Stmt.If> none = Collections.emptySet();
+            if (TraceCompiler.compile(interpreter, loop, none, none, 0) == null)
+                loop.untraceable = true;
+            else
+                interpreter.recording = new Recording(loop);
+            return false;
+        }
+        return trace.run(interpreter);
+    }
+
+    private boolean run(Interpreter interpreter) {
+        Registers registers = new Registers(interpreter, ints, floats, bools, objects);
+        for (Variable variable : variables) {
+            Object value;
+            try {
+                value = variable.slot >= 0 ? interpreter.local(variable.name, variable.slot)
+                        : interpreter.lookUp(variable.name);
+            } catch (RuntimeError error) {
+                value = null;
+            }
+            if (ValueType.of(value) != variable.type) {
+                if (++misses > MAX_MISSES)
+                    loop.untraceable = true;
+                return false;
+            }
+            variable.set(registers, value);
+        }
+
+        try {
+            while (condition.run(registers)) {
+                body.run(registers);
+                interpreter.safepoint(1, loop.keyword);
+            }
+        } catch (SideExit exit) {
+            writeBack(interpreter, registers);
+            resume(interpreter, exit);
+            interpreter.safepoint(1, loop.keyword);
+            learn(interpreter, exit);
+            return false;
+        } catch (RuntimeError error) {
+            // Whatever ran before the error stays done, as in the tree walker.
+            writeBack(interpreter, registers);
+            throw error;
+        }
+        writeBack(interpreter, registers);
+        return true;
+    }
+
+    private void writeBack(Interpreter interpreter, Registers registers) {
+        for (Variable variable : variables) {
+            if (!variable.assigned)
+                continue;
+            if (variable.slot >= 0)
+                interpreter.assignLocal(variable.name, variable.slot, variable.get(registers));
+            else
+                interpreter.assign(variable.name, variable.get(registers));
+        }
+    }
+
+    // Runs the arm the trace lacks, then the rest of every block around the
+    // exit, innermost first, in the tree walker. The blocks get Environments
+    // of their own as they would have there.
+    private static void resume(Interpreter interpreter, SideExit exit) {
+        Frame[] frames = exit.frames;
+        Environment[] environments = new Environment[frames.length];
+        Environment environment = interpreter.environment();
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i].block.scoped)
+                environment = new Environment(environment);
+            environments[i] = environment;
+        }
+
+        Stmt arm = exit.then ? exit.branch.thenBranch : exit.branch.elseBranch;
+        if (arm != null)
+            interpreter.executeBlock(Collections.singletonList(arm), environment);
+        for (int i = frames.length - 1; i >= 0; i--) {
+            List<Stmt> statements = frames[i].block.statements;
+            interpreter.executeBlock(statements.subList(frames[i].index + 1, statements.size()), environments[i]);
+        }
+    }
+
+    // Grows the trace by the arm that was missing.
+    private void learn(Interpreter interpreter, SideExit exit) {
+        if (generation + 1 >= MAX_GENERATIONS) {
+            loop.untraceable = true;
+            return;
+        }
+        Set<Stmt.If> thenTaken = new HashSet<>(this.thenTaken);
+        Set<Stmt.If> elseTaken = new HashSet<>(this.elseTaken);
+        (exit.then ? thenTaken : elseTaken).add(exit.branch);
+        loop.trace = TraceCompiler.compile(interpreter, loop, thenTaken, elseTaken, generation + 1);
+        if (loop.trace == null)
+            loop.untraceable = true;
+    }
+}
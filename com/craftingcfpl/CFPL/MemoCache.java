@@ -0,0 +1,113 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Results of one memoized function during one run, keyed on its arguments.
+// Up to two INT, CHAR or BOOL arguments, or a single FLOAT, pack into a long
+// and go into a direct-mapped table: a key landing on an occupied entry
+// replaces it. Other argument lists go into an LRU map of the same capacity.
+final class MemoCache {
+    static final int CAPACITY = 4096;
+
+    private final int arity;
+    private final boolean packed;
+    private long[] keys;
+    private Object[] values;
+    private Map<List<Object>, Object> tuples;
+
+    MemoCache(Stmt.Function function) {
+        this(function.params.stream().map(param -> param.dataType.type).toArray(TokenType[]::new));
+    }
+
+    // For programs compiled by cfplc, which do not carry their syntax tree.
+    MemoCache(TokenType... params) {
+        this.arity = params.length;
+        this.packed = packs(params);
+    }
+
+    private static boolean packs(TokenType[] params) {
+        if (params.length == 1 && params[0] == TokenType.FLOAT)
+            return true;
+        if (params.length > 2)
+            return false;
+        for (TokenType param : params) {
+            switch (param) {
+                case INT:
+                case CHAR:
+                case BOOL:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    boolean packed() {
+        return packed;
+    }
+
+    // Both kinds of key read the parameters from the first slots of a call
+    // frame, and must be taken before the body can assign them.
+    long key(Object[] frame) {
+        long key = 0;
+        for (int i = 0; i < arity; i++)
+            key = key << 32 | bits(frame[i]);
+        return key;
+    }
+
+    List<Object> tuple(Object[] frame) {
+        return Arrays.asList(Arrays.copyOf(frame, arity));
+    }
+
+    Object get(long key) {
+        if (keys == null)
+            return null;
+        int index = index(key);
+        return values[index] != null && keys[index] == key ? values[index] : null;
+    }
+
+    void put(long key, Object value) {
+        if (keys == null) {
+            keys = new long[CAPACITY];
+            values = new Object[CAPACITY];
+        }
+        int index = index(key);
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    Object get(List<Object> tuple) {
+        return tuples == null ? null : tuples.get(tuple);
+    }
+
+    void put(List<Object> tuple, Object value) {
+        if (tuples == null) {
+            tuples = new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                    return size() > CAPACITY;
+                }
+            };
+        }
+        tuples.put(tuple, value);
+    }
+
+    private static long bits(Object value) {
+        if (value instanceof Integer)
+            return (int) value & 0xffffffffL;
+        if (value instanceof Character)
+            return (char) value;
+        if (value instanceof Boolean)
+            return (boolean) value ? 1 : 0;
+        return Double.doubleToLongBits((double) value);
+    }
+
+    private static int index(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 52) & (CAPACITY - 1);
+    }
+}
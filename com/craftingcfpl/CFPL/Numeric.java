@@ -0,0 +1,160 @@
+package com.craftingcfpl.CFPL;
+
+// Arithmetic and comparison on INT (Integer) and FLOAT (Double) values.
+// Every operator has its own int/int, int/double, double/int and double/double
+// path so two INTs never get widened to double just to be compared.
+final class Numeric {
+
+    private Numeric() {
+    }
+
+    static Object add(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left + (int) right;
+            if (right instanceof Double)
+                return (int) left + (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left + (double) right;
+            if (right instanceof Integer)
+                return (double) left + (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static Object subtract(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left - (int) right;
+            if (right instanceof Double)
+                return (int) left - (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left - (double) right;
+            if (right instanceof Integer)
+                return (double) left - (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static Object multiply(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left * (int) right;
+            if (right instanceof Double)
+                return (int) left * (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left * (double) right;
+            if (right instanceof Integer)
+                return (double) left * (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static Object divide(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer) {
+                int divisor = (int) right;
+                if (divisor == 0)
+                    throw new RuntimeError(operator, "Division by zero.");
+                return (int) left / divisor;
+            }
+            if (right instanceof Double)
+                return (int) left / (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left / (double) right;
+            if (right instanceof Integer)
+                return (double) left / (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static Object modulo(Token operator, Object left, Object right) {
+        if (left instanceof Integer && right instanceof Integer) {
+            int divisor = (int) right;
+            if (divisor == 0)
+                throw new RuntimeError(operator, "Division by zero.");
+            return (int) left % divisor;
+        }
+        throw new RuntimeError(operator, "Modulo only accepts two integers!");
+    }
+
+    static Object negate(Token operator, Object right) {
+        if (right instanceof Integer)
+            return -(int) right;
+        if (right instanceof Double)
+            return -(double) right;
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
+
+    static boolean greater(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left > (int) right;
+            if (right instanceof Double)
+                return (int) left > (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left > (double) right;
+            if (right instanceof Integer)
+                return (double) left > (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static boolean greaterEqual(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left >= (int) right;
+            if (right instanceof Double)
+                return (int) left >= (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left >= (double) right;
+            if (right instanceof Integer)
+                return (double) left >= (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static boolean less(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left < (int) right;
+            if (right instanceof Double)
+                return (int) left < (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left < (double) right;
+            if (right instanceof Integer)
+                return (double) left < (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static boolean lessEqual(Token operator, Object left, Object right) {
+        if (left instanceof Integer) {
+            if (right instanceof Integer)
+                return (int) left <= (int) right;
+            if (right instanceof Double)
+                return (int) left <= (double) right;
+        } else if (left instanceof Double) {
+            if (right instanceof Double)
+                return (double) left <= (double) right;
+            if (right instanceof Integer)
+                return (double) left <= (int) right;
+        }
+        throw operandsError(operator);
+    }
+
+    static boolean isNumber(Object value) {
+        return value instanceof Integer || value instanceof Double;
+    }
+
+    private static RuntimeError operandsError(Token operator) {
+        return new RuntimeError(operator, "Operands must be numbers.");
+    }
+}
@@ -0,0 +1,542 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Removes code that cannot change what a run does:
+//   - IF and WHILE statements whose condition is constant;
+//   - stores to a variable that is never read, or that is stored again
+//     later in the same statement list before anything could read it;
+//   - VARs left with no reads and no stores.
+// A store or VAR only goes when its value is a literal expression that
+// statically has the variable's type, so no type error (or any other
+// runtime error) disappears with it. Uses are tracked by name across the
+// whole program; names declared more than once are left alone. PARALLEL
+// FOR loops are not touched, their analysis has already run.
+final class Optimizer {
+    private final List<String> report = new ArrayList<>();
+    private final Map<String, Integer> declarations = new HashMap<>();
+    private final Map<String, Stmt.Var> declared = new HashMap<>();
+    private final Set<String> read = new HashSet<>();
+    private final Map<String, Integer> stores = new HashMap<>();
+
+    private Optimizer() {
+    }
+
+    // Rewrites statements in place and describes each removal.
+    static List<String> optimize(List<Stmt> statements) {
+        Optimizer optimizer = new Optimizer();
+        optimizer.fold(statements);
+
+        Uses uses = optimizer.new Uses();
+        for (Stmt statement : statements)
+            uses.visit(statement);
+
+        List<List<Stmt>> lists = new ArrayList<>();
+        lists.add(statements);
+        for (Stmt statement : statements)
+            collectLists(statement, lists);
+        for (List<Stmt> list : lists)
+            optimizer.removeDeadStores(list);
+        for (List<Stmt> list : lists)
+            optimizer.removeUnusedVars(list);
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Function)
+                optimizer.removeUnusedVars(((Stmt.Function) statement).locals);
+        }
+        return optimizer.report;
+    }
+
+    private void removed(Stmt stmt, String what) {
+        report.add("line " + stmt.line + ": " + what);
+    }
+
+    private void fold(List<Stmt> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt folded = fold(statements.get(i));
+            if (folded == null)
+                statements.remove(i--);
+            else
+                statements.set(i, folded);
+        }
+    }
+
+    // What stmt reduces to once constant conditions are taken; null if nothing is left.
+    private Stmt fold(Stmt stmt) {
+        if (stmt instanceof Stmt.If) {
+            Stmt.If ifStmt = (Stmt.If) stmt;
+            Boolean condition = constant(ifStmt.condition);
+            if (condition != null) {
+                removed(stmt, "IF condition is always " + (condition ? "TRUE" : "FALSE")
+                        + ", kept only the arm it takes");
+                Stmt taken = condition ? ifStmt.thenBranch : ifStmt.elseBranch;
+                return taken == null ? null : fold(taken);
+            }
+            Stmt then = fold(ifStmt.thenBranch);
+            if (then != null)
+                ifStmt.thenBranch = then;
+            else // The arm needs a statement; keep the one that does nothing.
+                report.remove(report.size() - 1);
+            if (ifStmt.elseBranch != null)
+                ifStmt.elseBranch = fold(ifStmt.elseBranch);
+        } else if (stmt instanceof Stmt.While) {
+            Stmt.While whileStmt = (Stmt.While) stmt;
+            if (Boolean.FALSE.equals(constant(whileStmt.condition))) {
+                removed(stmt, "WHILE condition is always FALSE, removed the loop");
+                return null;
+            }
+            fold(whileStmt.body);
+        } else if (stmt instanceof Stmt.Block) {
+            fold(((Stmt.Block) stmt).statements);
+        } else if (stmt instanceof Stmt.Executable) {
+            fold(((Stmt.Executable) stmt).statements);
+        } else if (stmt instanceof Stmt.Function) {
+            fold(((Stmt.Function) stmt).body.statements);
+        }
+        return stmt;
+    }
+
+    // TRUE or FALSE for a condition that never changes, null otherwise.
+    private static Boolean constant(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            return value instanceof Boolean ? (Boolean) value : value != null;
+        }
+        if (expr instanceof Expr.Grouping)
+            return constant(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            if (unary.operator.type != TokenType.NOT && unary.operator.type != TokenType.BANG)
+                return null;
+            Boolean right = constant(unary.right);
+            return right == null ? null : !right;
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical) expr;
+            Boolean left = constant(logical.left);
+            if (left == null)
+                return null;
+            boolean and = logical.operator.type == TokenType.AND;
+            if (left != and)
+                return left;
+            return constant(logical.right);
+        }
+        return null;
+    }
+
+    // Every statement list below stmt that a statement can be dropped from.
+    static void collectLists(Stmt stmt, List<List<Stmt>> lists) {
+        List<Stmt> statements = null;
+        if (stmt instanceof Stmt.Block)
+            statements = ((Stmt.Block) stmt).statements;
+        else if (stmt instanceof Stmt.Executable)
+            statements = ((Stmt.Executable) stmt).statements;
+        else if (stmt instanceof Stmt.Function)
+            statements = ((Stmt.Function) stmt).body.statements;
+        else if (stmt instanceof Stmt.If) {
+            collectLists(((Stmt.If) stmt).thenBranch, lists);
+            if (((Stmt.If) stmt).elseBranch != null)
+                collectLists(((Stmt.If) stmt).elseBranch, lists);
+        } else if (stmt instanceof Stmt.While) {
+            collectLists(((Stmt.While) stmt).body, lists);
+        }
+        if (statements != null) {
+            lists.add(statements);
+            for (Stmt statement : statements)
+                collectLists(statement, lists);
+        }
+    }
+
+    private void removeDeadStores(List<Stmt> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            Expr.Assign store = store(statements.get(i));
+            if (store == null || !removable(store))
+                continue;
+            String name = store.name.lexeme;
+            String why;
+            if (!read.contains(name))
+                why = name + " (never read)";
+            else if (overwritten(statements, i, name))
+                why = name + " (stored again before it is read)";
+            else
+                continue;
+            removed(statements.get(i), "removed dead store to " + why);
+            statements.remove(i--);
+            stores.merge(name, -1, Integer::sum);
+        }
+    }
+
+    private static Expr.Assign store(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression && ((Stmt.Expression) stmt).expression instanceof Expr.Assign)
+            return (Expr.Assign) ((Stmt.Expression) stmt).expression;
+        return null;
+    }
+
+    // The assignment can only fail on a type mismatch; rule that out statically.
+    private boolean removable(Expr.Assign store) {
+        Stmt.Var var = unique(store.name.lexeme);
+        if (var == null || var.size != null)
+            return false;
+        switch (var.dataType.type) {
+            case INT:
+            case FLOAT:
+            case BOOL:
+            case CHAR:
+                return typeOf(store.value) == var.dataType.type;
+            default:
+                return false;
+        }
+    }
+
+    // Whether statements[from] is followed, in the same list, by another
+    // store to name with nothing in between that could observe it.
+    private boolean overwritten(List<Stmt> statements, int from, String name) {
+        for (int i = from + 1; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            Expr.Assign store = store(stmt);
+            Observer observer = new Observer(name);
+            if (store != null && store.name.lexeme.equals(name)) {
+                observer.visit(store.value);
+                return !observer.observed;
+            }
+            observer.visit(stmt);
+            if (observer.observed)
+                return false;
+        }
+        return false;
+    }
+
+    private void removeUnusedVars(List<? extends Stmt> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (!(statements.get(i) instanceof Stmt.Var))
+                continue;
+            Stmt.Var var = (Stmt.Var) statements.get(i);
+            String name = var.name.lexeme;
+            if (unique(name) != var || read.contains(name) || stores.getOrDefault(name, 0) > 0 || !removable(var))
+                continue;
+            removed(var, "removed unused VAR " + name);
+            statements.remove(i--);
+        }
+    }
+
+    // Mirrors Interpreter.visitVarStmt: INT wants an INT, FLOAT any number.
+    private static boolean removable(Stmt.Var var) {
+        if (var.size != null) {
+            return var.initializer == null && var.size instanceof Expr.Literal
+                    && ((Expr.Literal) var.size).value instanceof Integer
+                    && (int) ((Expr.Literal) var.size).value >= 0;
+        }
+        TokenType type = var.dataType.type;
+        if (var.initializer == null)
+            return type != TokenType.STRING;
+        TokenType value = typeOf(var.initializer);
+        return value == type || type == TokenType.FLOAT && value == TokenType.INT;
+    }
+
+    private Stmt.Var unique(String name) {
+        return declarations.getOrDefault(name, 0) == 1 ? declared.get(name) : null;
+    }
+
+    // The type of an expression built from literals that cannot fail, or null.
+    private static TokenType typeOf(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            if (value instanceof Integer)
+                return TokenType.INT;
+            if (value instanceof Double)
+                return TokenType.FLOAT;
+            if (value instanceof Boolean)
+                return TokenType.BOOL;
+            if (value instanceof Character)
+                return TokenType.CHAR;
+            if (value instanceof String)
+                return TokenType.STRING;
+            return null;
+        }
+        if (expr instanceof Expr.Grouping)
+            return typeOf(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            TokenType right = typeOf(unary.right);
+            if (right == null)
+                return null;
+            if (unary.operator.type == TokenType.MINUS)
+                return right == TokenType.INT || right == TokenType.FLOAT ? right : null;
+            return TokenType.BOOL;
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            TokenType left = typeOf(binary.left);
+            TokenType right = typeOf(binary.right);
+            if (!numeric(left) || !numeric(right))
+                return null;
+            switch (binary.operator.type) {
+                case PLUS:
+                case MINUS:
+                case STAR:
+                    return left == TokenType.INT && right == TokenType.INT ? TokenType.INT : TokenType.FLOAT;
+                case LESS:
+                case LESS_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                    return TokenType.BOOL;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean numeric(TokenType type) {
+        return type == TokenType.INT || type == TokenType.FLOAT;
+    }
+
+    // Walks the whole program once, recording declarations, reads and stores by name.
+    private class Uses extends Walker {
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            declare(stmt);
+            return super.visitVarStmt(stmt);
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            for (Stmt.Var param : stmt.params) {
+                declare(param);
+                // Parameters cannot be removed.
+                read.add(param.name.lexeme);
+            }
+            return super.visitFunctionStmt(stmt);
+        }
+
+        private void declare(Stmt.Var var) {
+            declarations.merge(var.name.lexeme, 1, Integer::sum);
+            declared.put(var.name.lexeme, var);
+        }
+
+        @Override
+        public Void visitInputStmt(Stmt.Input stmt) {
+            for (Token token : stmt.tokens)
+                read.add(token.lexeme);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            read.add(expr.name.lexeme);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            stores.merge(expr.name.lexeme, 1, Integer::sum);
+            return super.visitAssignExpr(expr);
+        }
+    }
+
+    // Whether a statement might read a variable: by name, through INPUT:, or
+    // by leaving the list early or calling a function that could.
+    private static class Observer extends Walker {
+        private final String name;
+        boolean observed = false;
+
+        Observer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Void visitInputStmt(Stmt.Input stmt) {
+            for (Token token : stmt.tokens)
+                observed |= token.lexeme.equals(name);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            observed = true;
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            observed |= expr.name.lexeme.equals(name);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            if (!Builtins.isBuiltin(expr.name.lexeme))
+                observed = true;
+            return super.visitCallExpr(expr);
+        }
+    }
+
+    // Visits every statement and expression; PARALLEL FOR through its sequential form.
+    private abstract static class Walker implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+        void visit(Stmt stmt) {
+            if (stmt != null)
+                stmt.accept(this);
+        }
+
+        void visit(Expr expr) {
+            if (expr != null)
+                expr.accept(this);
+        }
+
+        void visit(List<? extends Stmt> statements) {
+            for (Stmt statement : statements)
+                visit(statement);
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            visit(stmt.initializer);
+            visit(stmt.size);
+            return null;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            visit(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitExecutableStmt(Stmt.Executable stmt) {
+            visit(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            visit(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            visit(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitInputStmt(Stmt.Input stmt) {
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            visit(stmt.condition);
+            visit(stmt.thenBranch);
+            visit(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            visit(stmt.condition);
+            visit(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+            visit(stmt.sequential);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            visit(stmt.locals);
+            visit(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            visit(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            visit(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            visit(expr.left);
+            visit(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            visit(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            visit(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Expr.Logical expr) {
+            visit(expr.left);
+            visit(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexExpr(Expr.Index expr) {
+            visit(expr.array);
+            visit(expr.index);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexAssignExpr(Expr.IndexAssign expr) {
+            visit(expr.array);
+            visit(expr.index);
+            visit(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            for (Expr argument : expr.arguments)
+                visit(argument);
+            return null;
+        }
+
+        @Override
+        public Void visitCacheStoreExpr(Expr.CacheStore expr) {
+            visit(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitCacheLoadExpr(Expr.CacheLoad expr) {
+            return null;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.craftingcfpl.CFPL;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.craftingcfpl.CFPL.Stmt.Expression;
 
@@ -17,11 +19,19 @@ public class Parser {
     // BNF
 
     private final List<Token> tokens;
+    private final Diagnostics diagnostics;
     List<Stmt> statements = new ArrayList<>();
+    int statementCount = 0;
     private int current = 0;
+    private final Set<String> functionNames = new HashSet<>();
+    private final List<Stmt.Function> functions = new ArrayList<>();
+    // While parsing a function body: whether we are in one, and its return type.
+    private boolean inFunction = false;
+    private Token returnType = null;
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, Diagnostics diagnostics) {
         this.tokens = tokens;
+        this.diagnostics = diagnostics;
     }
 
     List<Stmt> parse() {
@@ -31,6 +41,7 @@ public class Parser {
               statements.addAll(declarations);
         }
 
+        Purity.analyze(functions);
         return statements;
     }
     
@@ -67,7 +78,7 @@ public class Parser {
 
         consume(TokenType.NEWLINE, "Expected line break");
 
-        return new Stmt.Var(name, iniExpr, dataType);
+        return at(name, new Stmt.Var(name, iniExpr, dataType));
     }
 
     private Stmt forVarDeclaration() {
@@ -86,7 +97,7 @@ public class Parser {
 
         consume(TokenType.SEMICOLON, "Expected semicolon after expressions");
 
-        return new Stmt.Var(name, iniExpr, dataType);
+        return at(name, new Stmt.Var(name, iniExpr, dataType));
     }
 
     private List<Stmt> declarations() {
@@ -97,6 +108,10 @@ public class Parser {
                 for (Stmt.Var var : vStmts) {
                     stmts.add(var);
                 }
+            } else if (match(FUN)) {
+                stmts.add(function(false));
+            } else if (match(AT)) {
+                stmts.add(annotatedFunction());
             } else {
                 stmts.add(statement());
             }
@@ -115,6 +130,10 @@ public class Parser {
             }
         }
 
+        return varList();
+    }
+
+    private List<Stmt.Var> varList() {
         Token name = consume(IDENTIFIER, "Expect variable name.");
         List<Stmt.Var> stmts = new ArrayList<>();
 
@@ -123,7 +142,7 @@ public class Parser {
             initializer = expression();
         }
 
-        stmts.add(new Stmt.Var(name, initializer, null));
+        stmts.add(at(name, new Stmt.Var(name, initializer, null)));
 
         while(match(COMMA)) {
             name = consume(IDENTIFIER, "Expect variable name.");
@@ -133,7 +152,7 @@ public class Parser {
                 initializer = expression();
             }
 
-            stmts.add(new Stmt.Var(name, initializer, null));
+            stmts.add(at(name, new Stmt.Var(name, initializer, null)));
             
         }
 
@@ -142,25 +161,112 @@ public class Parser {
 
         Token dataType = consume(getDataType(peek()), "Expected Data Type");
 
+        Expr size = null;
+        if (match(LEFT_BRACKET)) {
+            Token bracket = previous();
+            size = expression();
+            consume(RIGHT_BRACKET, "Expect ']' after array size.");
+            if (dataType.type == STRING)
+                error(bracket, "Arrays hold INT, FLOAT, BOOL or CHAR values.");
+        }
+
         for (Stmt.Var stmt : stmts) {
             stmt.setDataType(dataType);
+            stmt.setSize(size);
+            if (size != null && stmt.initializer != null)
+                error(stmt.name, "Array variables cannot have an initializer.");
         }
 
         consume(NEWLINE, "Expected newline after declaring");
 
         return stmts;
     }
+    // @NOMEMO, on its own line or before FUN, keeps a pure function from being memoized.
+    private Stmt.Function annotatedFunction() {
+        Token annotation = consume(IDENTIFIER, "Expect annotation name after '@'.");
+        if (!annotation.lexeme.equals("NOMEMO"))
+            error(annotation, "Unknown annotation '@" + annotation.lexeme + "'.");
+        match(NEWLINE);
+        consume(FUN, "Expect FUN after an annotation.");
+        return function(true);
+    }
+
+    private Stmt.Function function(boolean noMemo) {
+        Token name = consume(IDENTIFIER, "Expect function name.");
+        if (Builtins.isBuiltin(name.lexeme))
+            error(name, name.lexeme + " is a built-in function.");
+        else if (!functionNames.add(name.lexeme))
+            error(name, name.lexeme + " is already defined!");
+
+        consume(LEFT_PAREN, "Expect '(' after function name.");
+        List<Stmt.Var> params = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                Token param = consume(IDENTIFIER, "Expect parameter name.");
+                consume(AS, "Expect 'AS' after parameter name.");
+                Token dataType = consume(getDataType(peek()), "Expected Data Type");
+                params.add(at(param, new Stmt.Var(param, null, dataType)));
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "Expect ')' after parameters.");
+
+        Token type = null;
+        if (match(AS))
+            type = consume(getDataType(peek()), "Expected Data Type");
+        consume(NEWLINE, "Expect line break after function declaration.");
+
+        List<Stmt.Var> locals = new ArrayList<>();
+        while (match(VAR))
+            locals.addAll(varList());
+
+        Token start = consume(START, "Expect START before function body.");
+        Stmt.Block body;
+        inFunction = true;
+        returnType = type;
+        try {
+            body = at(start, new Stmt.Block(start, executable()));
+        } finally {
+            inFunction = false;
+            returnType = null;
+        }
+
+        Stmt.Function function = at(name, new Stmt.Function(name, params, type, locals, body));
+        function.id = functions.size();
+        function.noMemo = noMemo;
+        functions.add(function);
+        new Resolver(diagnostics).resolve(function);
+        return function;
+    }
+
+    private Stmt returnStatement() {
+        Token keyword = previous();
+        if (!inFunction)
+            throw error(keyword, "Cannot RETURN from top-level code.");
+
+        Expr value = null;
+        if (!check(NEWLINE))
+            value = expression();
+        if (value != null && returnType == null)
+            error(keyword, "This function has no return type.");
+        if (value == null && returnType != null)
+            error(keyword, "Expect a " + returnType.lexeme + " return value.");
+        consume(NEWLINE, "Expected line break");
+        return at(keyword, new Stmt.Return(keyword, value));
+    }
+
     private Stmt statement() {
         // if (match(TokenType.INPUT))
         //     return new Stmt.Input(input());  
         if (match(START)) {
-            return new Stmt.Block(executable());
+            Token start = previous();
+            return at(start, new Stmt.Block(start, executable()));
         }
 
         return expressionStatement(); //VAR
     }
 
     private Stmt ifStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after 'if'.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expect ')' after if condition.");
@@ -174,25 +280,28 @@ public class Parser {
             elseBranch = statement();
         }
 
-        return new Stmt.If(condition, thenBranch, elseBranch);
+        return at(keyword, new Stmt.If(condition, thenBranch, elseBranch));
     }
 
     private Stmt printStatement() {
+        Token keyword = previous();
         Expr value = expression();
         consume(TokenType.NEWLINE, "Expected line break");
-        return new Stmt.Print(value);
+        return at(keyword, new Stmt.Print(value));
     }
 
     private Stmt expressionStatement() {
+        Token first = peek();
         Expr expr = expression();
         consume(TokenType.NEWLINE, "Expected line break");
-        return new Stmt.Expression(expr);
+        return at(first, new Stmt.Expression(expr));
     }
 
     private Stmt forExpressionStatement() {
+        Token first = peek();
         Expr expr = expression();
         consume(TokenType.SEMICOLON, "Expected semicolon after expression");
-        return new Stmt.Expression(expr);
+        return at(first, new Stmt.Expression(expr));
     }
 
     private List<Stmt> executable() {
@@ -215,8 +324,10 @@ public class Parser {
 
     private Stmt executeStatements() {
         try {
-            if (match(TokenType.INPUT))
-                return new Stmt.Input(input());
+            if (match(TokenType.INPUT)) {
+                Token keyword = previous();
+                return at(keyword, new Stmt.Input(input()));
+            }
        
             // if (match(TokenType.VAR))
             //     return varDeclaration();
@@ -224,6 +335,9 @@ public class Parser {
             if (match(TokenType.PRINT))
                 return printStatement();
 
+            if (match(RETURN))
+                return returnStatement();
+
             if (match(IF)) {
                 return ifStatement();
             }
@@ -232,11 +346,17 @@ public class Parser {
             }
             if (match(FOR)) 
                 return forStatement();
+            if (match(PARALLEL)) {
+                consume(FOR, "Expect FOR after PARALLEL.");
+                return parallelForStatement();
+            }
 
           
 
-            if (match(TokenType.START))
-                return new Stmt.Block(executable());
+            if (match(TokenType.START)) {
+                Token start = previous();
+                return at(start, new Stmt.Block(start, executable()));
+            }
 
             return expressionStatement();
         } catch (ParseError error) {
@@ -245,7 +365,34 @@ public class Parser {
         }
     }
 
+    private static class ForClauses {
+        Token keyword;
+        Stmt initializer;
+        Expr condition;
+        Expr increment;
+        Stmt body;
+    }
+
     private Stmt forStatement() {
+        return desugarFor(forClauses());
+    }
+
+    private Stmt parallelForStatement() {
+        ForClauses clauses = forClauses();
+        Stmt.ParallelFor loop = at(clauses.keyword, new Stmt.ParallelFor(clauses.keyword,
+                clauses.initializer, clauses.condition, clauses.increment, clauses.body,
+                desugarFor(clauses)));
+        DependenceAnalysis.analyze(loop);
+        // Chunks run on Environments, but inside a function the loop's
+        // variables live in frame slots.
+        if (inFunction)
+            loop.serialReason = "the loop is inside a function";
+        return loop;
+    }
+
+    private ForClauses forClauses() {
+        ForClauses clauses = new ForClauses();
+        clauses.keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after FOR expression");
 
         Stmt iniStmt;
@@ -274,23 +421,34 @@ public class Parser {
         consume(NEWLINE, "Expect line break after for statement.");
 
 
-        Stmt body = statement();
- 
+        clauses.initializer = iniStmt;
+        clauses.condition = condition;
+        clauses.increment = increment;
+        clauses.body = statement();
+        return clauses;
+    }
+
+    private Stmt desugarFor(ForClauses clauses) {
+        Token keyword = clauses.keyword;
+        Stmt body = clauses.body;
+        Expr condition = clauses.condition;
 
-        if (increment != null) {
-            body = new Stmt.Block(
-                    Arrays.asList(
+        // Mutable like the lists of parsed blocks: the optimizer removes
+        // statements from them.
+        if (clauses.increment != null) {
+            body = at(keyword, new Stmt.Block(keyword,
+                    new ArrayList<>(Arrays.asList(
                             body,
-                            new Stmt.Expression(increment)));
+                            at(keyword, new Stmt.Expression(clauses.increment))))));
         }
 
         if (condition == null)
             condition = new Expr.Literal(true);
 
-        body = new Stmt.While(condition, body);
+        body = at(keyword, new Stmt.While(keyword, condition, body));
 
-        if (iniStmt != null) {
-            body = new Stmt.Block(Arrays.asList(iniStmt, body));
+        if (clauses.initializer != null) {
+            body = at(keyword, new Stmt.Block(keyword, new ArrayList<>(Arrays.asList(clauses.initializer, body))));
             
         }
 
@@ -298,6 +456,7 @@ public class Parser {
     }
 
     private Stmt whileStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after WHILE expression");
 
         Expr condition = expression();
@@ -307,7 +466,7 @@ public class Parser {
 
         Stmt body = statement();
 
-        return new Stmt.While(condition, body);
+        return at(keyword, new Stmt.While(keyword, condition, body));
 
     }
 
@@ -322,6 +481,10 @@ public class Parser {
                 Token name = ((Expr.Variable) expr).name;
                 return new Expr.Assign(name, value);
             }
+            if (expr instanceof Expr.Index) {
+                Expr.Index index = (Expr.Index) expr;
+                return new Expr.IndexAssign(index.array, index.bracket, index.index, value);
+            }
 
             error(equals, "Invalid assignment target.");
         }
@@ -410,7 +573,31 @@ public class Parser {
             return new Expr.Unary(operator, right);
         }
 
-        return primary();
+        return index();
+    }
+
+    private Expr index() {
+        Expr expr = primary();
+
+        while (match(LEFT_BRACKET)) {
+            Token bracket = previous();
+            Expr index = expression();
+            consume(RIGHT_BRACKET, "Expect ']' after index.");
+            expr = new Expr.Index(expr, bracket, index);
+        }
+
+        return expr;
+    }
+
+    private Expr call(Token name) {
+        List<Expr> arguments = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                arguments.add(expression());
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "Expect ')' after arguments.");
+        return new Expr.Call(name, arguments);
     }
 
     private Expr primary() {
@@ -427,7 +614,10 @@ public class Parser {
             return new Expr.Literal(previous().literal);
         }
         if (match(IDENTIFIER)) {
-            return new Expr.Variable(previous());
+            Token name = previous();
+            if (match(LEFT_PAREN))
+                return call(name);
+            return new Expr.Variable(name);
         }
         if (match(LEFT_PAREN)) {
             Expr expr = expression();
@@ -462,8 +652,14 @@ public class Parser {
         return peek().type == EOF;
     }
 
+    private <S extends Stmt> S at(Token token, S stmt) {
+        stmt.line = token.line;
+        stmt.index = statementCount++;
+        return stmt;
+    }
+
     private ParseError error(Token token, String message) {
-        CFPL.error(token, message);
+        diagnostics.error(token, message);
         return new ParseError();
     }
 
@@ -0,0 +1,169 @@
+package com.craftingcfpl.CFPL;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Attributes execution time and counts to source lines (CFPL --profile).
+// Every executed statement is timed with System.nanoTime(); time spent in
+// nested statements is subtracted so each line also gets its own self time.
+class Profiler implements ExecutionListener {
+
+    private static final class Node {
+        final int line;
+        final List<Node> children = new ArrayList<>(2);
+        long selfNanos;
+
+        Node(int line) {
+            this.line = line;
+        }
+
+        // A statement on the line of the one it is nested in, such as the
+        // parts of a FOR or a recursive call on one line, stays in its frame.
+        Node child(int line) {
+            if (line == this.line)
+                return this;
+            for (int i = 0; i < children.size(); i++) {
+                Node child = children.get(i);
+                if (child.line == line)
+                    return child;
+            }
+            Node child = new Node(line);
+            children.add(child);
+            return child;
+        }
+    }
+
+    private final String name;
+    private final String[] sourceLines;
+
+    private long[] counts = new long[64];
+    private long[] selfNanos = new long[64];
+    private long[] totalNanos = new long[64];
+    // Statements of each line being executed. Only the outermost one adds to
+    // the line's total time, which would otherwise count nested ones twice.
+    private int[] active = new int[64];
+
+    private final Node root = new Node(-1);
+    private Node[] nodes = new Node[32];
+    private long[] starts = new long[32];
+    private long[] childNanos = new long[32];
+    private int depth = 0;
+
+    Profiler(String name, String source) {
+        this.name = name;
+        this.sourceLines = source.split("\n", -1);
+        nodes[0] = root;
+    }
+
+    @Override
+    public void beforeStatement(Stmt stmt) {
+        enter(stmt.line);
+    }
+
+    @Override
+    public void afterStatement(Stmt stmt) {
+        exit();
+    }
+
+    private void enter(int line) {
+        if (line >= counts.length) {
+            int size = Math.max(line + 1, counts.length * 2);
+            counts = Arrays.copyOf(counts, size);
+            selfNanos = Arrays.copyOf(selfNanos, size);
+            totalNanos = Arrays.copyOf(totalNanos, size);
+            active = Arrays.copyOf(active, size);
+        }
+        if (depth + 1 == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            starts = Arrays.copyOf(starts, starts.length * 2);
+            childNanos = Arrays.copyOf(childNanos, childNanos.length * 2);
+        }
+
+        counts[line]++;
+        active[line]++;
+        Node node = nodes[depth].child(line);
+        depth++;
+        nodes[depth] = node;
+        childNanos[depth] = 0;
+        starts[depth] = System.nanoTime();
+    }
+
+    private void exit() {
+        long elapsed = System.nanoTime() - starts[depth];
+        long self = elapsed - childNanos[depth];
+        Node node = nodes[depth];
+        depth--;
+
+        childNanos[depth] += elapsed;
+        node.selfNanos += self;
+        selfNanos[node.line] += self;
+        if (--active[node.line] == 0)
+            totalNanos[node.line] += elapsed;
+    }
+
+    void printHotLines(PrintStream out, int limit) {
+        long total = 0;
+        List<Integer> lines = new ArrayList<>();
+        for (int line = 0; line < counts.length; line++) {
+            if (counts[line] > 0) {
+                lines.add(line);
+                total += selfNanos[line];
+            }
+        }
+        lines.sort(Comparator.comparingLong((Integer line) -> selfNanos[line]).reversed());
+
+        out.println();
+        out.println("Hot lines of " + name + " (by self time)");
+        out.printf("%6s %12s %12s %7s %12s  %s%n", "line", "count", "self ms", "self%", "total ms", "source");
+        for (int i = 0; i < lines.size() && i < limit; i++) {
+            int line = lines.get(i);
+            out.printf("%6d %12d %12.3f %6.1f%% %12.3f  %s%n",
+                    line, counts[line],
+                    selfNanos[line] / 1e6,
+                    total > 0 ? 100.0 * selfNanos[line] / total : 0.0,
+                    totalNanos[line] / 1e6,
+                    sourceLine(line));
+        }
+    }
+
+    // One "frame;frame;frame weight" line per call path, weighted in
+    // microseconds of self time, as read by flamegraph.pl and speedscope.
+    void writeCollapsedStacks(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            StringBuilder path = new StringBuilder(frameName(name));
+            for (Node child : root.children)
+                writeCollapsed(writer, path, child);
+        }
+    }
+
+    private void writeCollapsed(Writer writer, StringBuilder path, Node node) throws IOException {
+        int mark = path.length();
+        path.append(';').append(frameName("L" + node.line + " " + sourceLine(node.line)));
+
+        long micros = node.selfNanos / 1000;
+        if (micros > 0)
+            writer.write(path + " " + micros + "\n");
+        for (Node child : node.children)
+            writeCollapsed(writer, path, child);
+
+        path.setLength(mark);
+    }
+
+    private String sourceLine(int line) {
+        if (line < 1 || line > sourceLines.length)
+            return "";
+        return sourceLines[line - 1].trim();
+    }
+
+    private static String frameName(String text) {
+        return text.replace(';', ',').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,218 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Marks the functions whose result depends only on their arguments: no
+// INPUT: or OUTPUT:, no reads or writes of top-level variables, and calls
+// only to built-ins and other pure functions. Those that return a value and
+// are not annotated @NOMEMO get memoized.
+final class Purity implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+    private boolean pure = true;
+    private final List<String> callees = new ArrayList<>();
+
+    private Purity() {
+    }
+
+    static void analyze(List<Stmt.Function> functions) {
+        Map<String, Stmt.Function> byName = new HashMap<>();
+        Map<Stmt.Function, List<String>> calls = new HashMap<>();
+        for (Stmt.Function function : functions) {
+            Purity purity = new Purity();
+            for (Stmt.Var local : function.locals)
+                purity.visit(local);
+            purity.visit(function.body);
+            function.pure = purity.pure;
+            byName.put(function.name.lexeme, function);
+            calls.put(function, purity.callees);
+        }
+
+        // A function calling an impure one is impure; repeat until nothing changes.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Stmt.Function function : functions) {
+                if (!function.pure)
+                    continue;
+                for (String callee : calls.get(function)) {
+                    Stmt.Function target = byName.get(callee);
+                    if (target == null || !target.pure) {
+                        function.pure = false;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (Stmt.Function function : functions)
+            function.memoize = function.pure && !function.noMemo && function.returnType != null;
+    }
+
+    private void visit(Stmt stmt) {
+        if (stmt != null)
+            stmt.accept(this);
+    }
+
+    private void visit(Expr expr) {
+        if (expr != null)
+            expr.accept(this);
+    }
+
+    private void visit(List<Stmt> statements) {
+        for (Stmt statement : statements)
+            visit(statement);
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        visit(stmt.initializer);
+        visit(stmt.size);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        visit(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitExecutableStmt(Stmt.Executable stmt) {
+        visit(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        visit(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        pure = false;
+        return null;
+    }
+
+    @Override
+    public Void visitInputStmt(Stmt.Input stmt) {
+        pure = false;
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        visit(stmt.condition);
+        visit(stmt.thenBranch);
+        visit(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        visit(stmt.condition);
+        visit(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+        visit(stmt.sequential);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        visit(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        if (expr.slot < 0)
+            pure = false;
+        visit(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        visit(expr.left);
+        visit(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        visit(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        visit(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (expr.slot < 0)
+            pure = false;
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        visit(expr.left);
+        visit(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        visit(expr.array);
+        visit(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexAssignExpr(Expr.IndexAssign expr) {
+        visit(expr.array);
+        visit(expr.index);
+        visit(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (!Builtins.isBuiltin(expr.name.lexeme))
+            callees.add(expr.name.lexeme);
+        for (Expr argument : expr.arguments)
+            visit(argument);
+        return null;
+    }
+
+    @Override
+    public Void visitCacheStoreExpr(Expr.CacheStore expr) {
+        visit(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitCacheLoadExpr(Expr.CacheLoad expr) {
+        return null;
+    }
+}
@@ -0,0 +1,217 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Gives every parameter and local of a function, including FOR (VAR ...)
+// headers, its own slot in the call frame, and points each variable use
+// inside the function at its slot. Names not declared in the function stay
+// at slot -1 and are looked up among the globals.
+class Resolver implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+    private final Diagnostics diagnostics;
+    private final Deque<Map<String, Integer>> scopes = new ArrayDeque<>();
+    private int slots = 0;
+
+    Resolver(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    void resolve(Stmt.Function function) {
+        scopes.push(new HashMap<>());
+        for (Stmt.Var param : function.params)
+            resolve(param);
+        for (Stmt.Var local : function.locals)
+            resolve(local);
+        function.body.scoped = false;
+        resolve(function.body.statements);
+        scopes.pop();
+        function.frameSize = slots;
+    }
+
+    private void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements)
+            resolve(statement);
+    }
+
+    private void resolve(Stmt stmt) {
+        if (stmt != null)
+            stmt.accept(this);
+    }
+
+    private void resolve(Expr expr) {
+        if (expr != null)
+            expr.accept(this);
+    }
+
+    private int declare(Token name) {
+        Map<String, Integer> scope = scopes.peek();
+        if (scope.containsKey(name.lexeme))
+            diagnostics.error(name, name.lexeme + " is already defined!");
+        scope.put(name.lexeme, slots);
+        return slots++;
+    }
+
+    private int slot(Token name) {
+        for (Map<String, Integer> scope : scopes) {
+            Integer slot = scope.get(name.lexeme);
+            if (slot != null)
+                return slot;
+        }
+        return -1;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        resolve(stmt.initializer);
+        resolve(stmt.size);
+        stmt.slot = declare(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        stmt.scoped = false;
+        scopes.push(new HashMap<>());
+        resolve(stmt.statements);
+        scopes.pop();
+        return null;
+    }
+
+    @Override
+    public Void visitExecutableStmt(Stmt.Executable stmt) {
+        resolve(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitInputStmt(Stmt.Input stmt) {
+        stmt.slots = new int[stmt.tokens.size()];
+        for (int i = 0; i < stmt.slots.length; i++)
+            stmt.slots[i] = slot(stmt.tokens.get(i));
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        resolve(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitParallelForStmt(Stmt.ParallelFor stmt) {
+        resolve(stmt.sequential);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        resolve(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        resolve(expr.value);
+        expr.slot = slot(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        expr.slot = slot(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        resolve(expr.array);
+        resolve(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexAssignExpr(Expr.IndexAssign expr) {
+        resolve(expr.array);
+        resolve(expr.index);
+        resolve(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        for (Expr argument : expr.arguments)
+            resolve(argument);
+        return null;
+    }
+
+    @Override
+    public Void visitCacheStoreExpr(Expr.CacheStore expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitCacheLoadExpr(Expr.CacheLoad expr) {
+        return null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.craftingcfpl.CFPL;
+
+// Unwinds a function call to its caller. Created for every RETURN, so it
+// skips the stack trace.
+class Return extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final Object value;
+
+    Return(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
@@ -0,0 +1,106 @@
+package com.craftingcfpl.CFPL;
+
+// Plain Java loops; C2 may still auto-vectorize the simple ones.
+class ScalarArrayOps implements ArrayOps {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void lanewise(Op op, int[] a, int[] b, int[] result) {
+        for (int i = 0; i < result.length; i++)
+            result[i] = op.apply(a[i], b[i]);
+    }
+
+    @Override
+    public void lanewise(Op op, double[] a, double[] b, double[] result) {
+        for (int i = 0; i < result.length; i++)
+            result[i] = op.apply(a[i], b[i]);
+    }
+
+    @Override
+    public int sum(int[] values) {
+        int sum = 0;
+        for (int value : values)
+            sum += value;
+        return sum;
+    }
+
+    @Override
+    public double sum(double[] values) {
+        double sum = 0;
+        for (double value : values)
+            sum += value;
+        return sum;
+    }
+
+    @Override
+    public int min(int[] values) {
+        int min = values[0];
+        for (int i = 1; i < values.length; i++)
+            min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public double min(double[] values) {
+        double min = values[0];
+        for (int i = 1; i < values.length; i++)
+            min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public int max(int[] values) {
+        int max = values[0];
+        for (int i = 1; i < values.length; i++)
+            max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public double max(double[] values) {
+        double max = values[0];
+        for (int i = 1; i < values.length; i++)
+            max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public int dot(int[] a, int[] b) {
+        int dot = 0;
+        for (int i = 0; i < a.length; i++)
+            dot += a[i] * b[i];
+        return dot;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++)
+            dot += a[i] * b[i];
+        return dot;
+    }
+
+    @Override
+    public int count(Compare compare, int[] values, int operand) {
+        int count = 0;
+        for (int value : values) {
+            if (compare.test(value, operand))
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int count(Compare compare, double[] values, double operand) {
+        int count = 0;
+        for (double value : values) {
+            if (compare.test(value, operand))
+                count++;
+        }
+        return count;
+    }
+}
@@ -9,6 +9,7 @@ import static com.craftingcfpl.CFPL.TokenType.*;
 
 class Scanner {
     private final String source;
+    private final Diagnostics diagnostics;
     
     private final List<Token> tokens = new ArrayList<>();
     private int start = 0;
@@ -67,12 +68,16 @@ class Scanner {
         keywords.put("ELSE", ELSE);
         keywords.put("WHILE", WHILE);
         keywords.put("FOR", FOR);
+        keywords.put("PARALLEL", PARALLEL);
+        keywords.put("FUN", FUN);
+        keywords.put("RETURN", RETURN);
         keywords.put("#", NEXT_LINE);
 
     }
 
-    Scanner(String source) {
+    Scanner(String source, Diagnostics diagnostics) {
         this.source = source;
+        this.diagnostics = diagnostics;
     }
 
     private boolean shouldAddNewLine() {
@@ -102,6 +107,12 @@ class Scanner {
             case ')':
                 addToken(RIGHT_PAREN);
                 break;
+            case '[':
+                addToken(LEFT_BRACKET);
+                break;
+            case ']':
+                addToken(RIGHT_BRACKET);
+                break;
             case '{':
                 addToken(LEFT_BRACE);
                 break;
@@ -138,6 +149,9 @@ class Scanner {
             case '&':
                 addToken(AMPERSAND);
                 break;
+            case '@':
+                addToken(AT);
+                break;
             case '=': // == ? =
                 addToken(match('=') ? EQUAL_EQUAL : EQUAL);
                 break;
@@ -195,7 +209,7 @@ class Scanner {
                     identifier();
                 }
                 else {
-                    CFPL.error(line, "Unexpected character.");
+                    diagnostics.error(line, "Unexpected character.");
                 }
             break;
         }
@@ -279,7 +293,7 @@ class Scanner {
         }
 
         if (isAtEnd()) {
-            CFPL.error(line, "Unterminated string.");
+            diagnostics.error(line, "Unterminated string.");
             return;
         }
 
@@ -317,7 +331,7 @@ class Scanner {
         }
 
         if (isAtEnd()) {
-            CFPL.error(line, "Unterminated character.");
+            diagnostics.error(line, "Unterminated character.");
             return;
         }
 
@@ -327,7 +341,7 @@ class Scanner {
         String value = source.substring(start + 1, current - 1);
 
         if (value.length() != 1) {
-            CFPL.error(line, value + " is not a character");
+            diagnostics.error(line, value + " is not a character");
         }
         addToken(CHAR, (char)value.charAt(0));
     }
@@ -407,7 +421,7 @@ class Scanner {
             advance();
 
         if (isAtEnd()) {
-            CFPL.error(line, "Unterminated escape code.");
+            diagnostics.error(line, "Unterminated escape code.");
             return;
         }
         
@@ -420,7 +434,7 @@ class Scanner {
 
 
         if (value.length() != 1) {
-            CFPL.error(line, value + " is not a character");
+            diagnostics.error(line, value + " is not a character");
         }
         addToken(STRING, value);
     }
@@ -4,7 +4,7 @@ import java.util.List;
 
 
 
-abstract class Stmt {
+public abstract class Stmt {
 
   interface Visitor<R> {
     R visitExpressionStmt(Expression stmt);
@@ -15,6 +15,9 @@ abstract class Stmt {
     R visitInputStmt(Input stmt); // INPUT:
     R visitIfStmt(If stmt);
     R visitWhileStmt (While stmt);
+    R visitParallelForStmt(ParallelFor stmt);
+    R visitFunctionStmt(Function stmt);
+    R visitReturnStmt(Return stmt);
 
   }
 
@@ -32,11 +35,20 @@ abstract class Stmt {
   }
 
    static class Block extends Stmt {
-     Block(List<Stmt> statements) {
+     Block(Token keyword, List<Stmt> statements) {
+      this.keyword = keyword;
       this.statements = statements;
+      for (Stmt statement : statements) {
+        if (statement instanceof Var)
+          scoped = true;
+      }
     }
 
+    final Token keyword;
     final List<Stmt> statements;
+    // Whether the block needs an Environment of its own. Only a VAR puts
+    // anything in one, and inside functions even VARs live in frame slots.
+    boolean scoped;
     
     @Override
     public <R> R accept(Visitor<R> visitor) {
@@ -68,9 +80,17 @@ abstract class Stmt {
         this.dataType = dataType;
     }
 
+    void setSize(Expr size) {
+        this.size = size;
+    }
+
     final Token name;
     final Expr initializer;
     Token dataType;
+    // Length of an array variable (VAR xs AS INT[n]); null for scalars.
+    Expr size;
+    // Frame slot inside a function, -1 for globals. Set by Resolver.
+    int slot = -1;
 
     @Override
     <R> R accept(Visitor<R> visitor) {
@@ -103,6 +123,8 @@ abstract class Stmt {
     }
 
     public final List<Token> tokens;
+    // Frame slot of each variable, -1 for globals. Set by Resolver.
+    int[] slots;
   }
 
   static class If extends Stmt {
@@ -119,21 +141,29 @@ abstract class Stmt {
       return visitor.visitIfStmt(this);
     }
 
-    final Stmt thenBranch;
+    // Optimizer may replace a nested IF with the arm it always takes.
+    Stmt thenBranch;
 
-    final Stmt elseBranch;
+    Stmt elseBranch;
 
   
   }
 
   static class While extends Stmt {
-    While(Expr condition, Stmt body) {
+    While(Token keyword, Expr condition, Stmt body) {
+      this.keyword = keyword;
       this.condition = condition;
       this.body = body;
     }
 
+    final Token keyword;
     final Expr condition;
     final Stmt body;
+    // Back-edges taken so far, up to LoopTrace.TRACE_THRESHOLD, and the
+    // trace the loop runs in once it is hot.
+    int backEdges;
+    boolean untraceable;
+    LoopTrace trace;
 
     @Override
     <R> R accept(Visitor<R> visitor) {
@@ -141,5 +171,96 @@ abstract class Stmt {
     }
   }
 
+  // PARALLEL FOR. The desugared loop is kept as sequential and runs whenever
+  // DependenceAnalysis leaves a serialReason.
+  static class ParallelFor extends Stmt {
+    ParallelFor(Token keyword, Stmt initializer, Expr condition, Expr increment,
+        Stmt body, Stmt sequential) {
+      this.keyword = keyword;
+      this.initializer = initializer;
+      this.condition = condition;
+      this.increment = increment;
+      this.body = body;
+      this.sequential = sequential;
+    }
+
+    final Token keyword;
+    final Stmt initializer;
+    final Expr condition;
+    final Expr increment;
+    final Stmt body;
+    final Stmt sequential;
+
+    // Set by DependenceAnalysis.
+    Stmt.Var variable;
+    Expr limit;
+    boolean inclusive;
+    List<DependenceAnalysis.Reduction> reductions;
+    String serialReason;
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitParallelForStmt(this);
+    }
+  }
+
+  // FUN name(a AS INT, ...) AS type, its VAR lines and its START ... STOP body.
+  // Parameters and locals are Var statements with frame slots.
+  static class Function extends Stmt {
+    Function(Token name, List<Stmt.Var> params, Token returnType,
+        List<Stmt.Var> locals, Stmt.Block body) {
+      this.name = name;
+      this.params = params;
+      this.returnType = returnType;
+      this.locals = locals;
+      this.body = body;
+    }
+
+    final Token name;
+    final List<Stmt.Var> params;
+    // Null for a function that returns no value.
+    final Token returnType;
+    final List<Stmt.Var> locals;
+    final Stmt.Block body;
+    // Slots in a call frame. Set by Resolver.
+    int frameSize;
+    // Position among the program's functions, and whether it was annotated @NOMEMO.
+    int id;
+    boolean noMemo;
+    // Set by Purity.
+    boolean pure;
+    boolean memoize;
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitFunctionStmt(this);
+    }
+  }
+
+  static class Return extends Stmt {
+    Return(Token keyword, Expr value) {
+      this.keyword = keyword;
+      this.value = value;
+    }
+
+    final Token keyword;
+    final Expr value;
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitReturnStmt(this);
+    }
+  }
+
+  // Source line the statement starts on, set by the parser.
+  int line;
+
+  // Position in parse order, unique within a program; 0 .. statementCount-1.
+  int index;
+
+  public int line() {
+    return line;
+  }
+
   abstract <R> R accept(Visitor<R> visitor);
 }
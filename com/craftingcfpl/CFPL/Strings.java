@@ -0,0 +1,44 @@
+package com.craftingcfpl.CFPL;
+
+// CHAR values as STRINGs, for & and OUTPUT:. Java Strings already keep
+// Latin-1 text in one byte per char and cache their hash, so STRING values
+// stay Strings; what is left to save is a new String per CHAR.
+final class Strings {
+
+    // Every Latin-1 CHAR as a one-character STRING, made once.
+    private static final String[] LATIN_1 = new String[256];
+
+    static {
+        for (int c = 0; c < LATIN_1.length; c++)
+            LATIN_1[c] = String.valueOf((char) c);
+    }
+
+    private Strings() {
+    }
+
+    static String of(char c) {
+        return c < LATIN_1.length ? LATIN_1[c] : String.valueOf(c);
+    }
+
+    // What a String of text takes, as compact strings keep it: a byte per
+    // char if every char is Latin-1, two otherwise.
+    static long bytes(CharSequence text) {
+        return latin1(text, 0) ? text.length() : 2L * text.length();
+    }
+
+    // Whether the chars of text from from on are all Latin-1.
+    static boolean latin1(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) >= LATIN_1.length)
+                return false;
+        }
+        return true;
+    }
+
+    // What toString() on the value would give.
+    static String of(Object value) {
+        if (value instanceof Character)
+            return of((char) value);
+        return value.toString();
+    }
+}
@@ -13,11 +13,11 @@ enum TokenType {
 
 
     // Literals.
-    IDENTIFIER, STRING, NUMBER, AMPERSAND, INPUT, NEWLINE,NEXT_LINE,LEFT_BRACKET,
+    IDENTIFIER, STRING, NUMBER, AMPERSAND, INPUT, NEWLINE,NEXT_LINE,LEFT_BRACKET, RIGHT_BRACKET, AT,
 
     // Keywords.
     AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE, NOT,
+    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE, NOT, PARALLEL,
 
     // Data Types
     INT, CHAR, BOOL, FLOAT, AS, 
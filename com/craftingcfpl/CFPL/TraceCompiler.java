@@ -0,0 +1,762 @@
+package com.craftingcfpl.CFPL;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.craftingcfpl.CFPL.LoopTrace.BoolCode;
+import com.craftingcfpl.CFPL.LoopTrace.FloatCode;
+import com.craftingcfpl.CFPL.LoopTrace.IntCode;
+import com.craftingcfpl.CFPL.LoopTrace.ObjectCode;
+import com.craftingcfpl.CFPL.LoopTrace.Step;
+import com.craftingcfpl.CFPL.LoopTrace.Variable;
+
+// Compiles a WHILE loop into a LoopTrace. The types of the variables read by
+// the loop are the types of the values they hold now; every operation is
+// then specialized for its operand types, as cfplc's JavaGenerator does.
+//
+// Loops that call FUNs, read INPUT:, RETURN or contain other loops are left
+// to the tree walker, and so is anything the tree walker would reject or
+// convert at run time: mismatched types, NIL, conditions that are not BOOL.
+// The tree walker then reports those errors itself.
+final class TraceCompiler {
+    private static final Untraceable UNTRACEABLE = new Untraceable();
+
+    private static final class Untraceable extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Untraceable() {
+            super(null, null, false, false);
+        }
+    }
+
+    // A compiled expression: an IntCode for INT and CHAR, a FloatCode for
+    // FLOAT, a BoolCode for BOOL and an ObjectCode for everything else.
+    private static final class Code {
+        final ValueType type;
+        final Object run;
+
+        Code(ValueType type, Object run) {
+            this.type = type;
+            this.run = run;
+        }
+    }
+
+    // A block being compiled and the statement in it at index.
+    private static final class Frame {
+        final Stmt.Block block;
+        int index;
+
+        Frame(Stmt.Block block) {
+            this.block = block;
+        }
+    }
+
+    // The interpreter that recorded the loop, only asked for the types of its
+    // variables; the compiled code uses the one in its Registers.
+    private final Interpreter interpreter;
+    private final Set<Stmt.If> thenTaken;
+    private final Set<Stmt.If> elseTaken;
+    // Keyed by frame slot inside a function, by name otherwise.
+    private final Map<Object, Variable> variables = new HashMap<>();
+    private final List<Frame> frames = new ArrayList<>();
+    // The latest CacheStore of each slot. Its CacheLoads are in the same
+    // basic block, so the tree walker never needs these after an exit.
+    private final Map<Integer, Variable> caches = new HashMap<>();
+    private int ints = 0;
+    private int floats = 0;
+    private int bools = 0;
+    private int objects = 0;
+
+    private TraceCompiler(Interpreter interpreter, Set<Stmt.If> thenTaken, Set<Stmt.If> elseTaken) {
+        this.interpreter = interpreter;
+        this.thenTaken = thenTaken;
+        this.elseTaken = elseTaken;
+    }
+
+    // Null if the loop cannot be traced. IF arms in neither set become side
+    // exits.
+    static LoopTrace compile(Interpreter interpreter, Stmt.While loop, Set<Stmt.If> thenTaken,
+            Set<Stmt.If> elseTaken, int generation) {
+        TraceCompiler compiler = new TraceCompiler(interpreter, thenTaken, elseTaken);
+        try {
+            BoolCode condition = compiler.condition(loop.condition);
+            Step body = compiler.statement(loop.body);
+            return new LoopTrace(loop, new ArrayList<>(compiler.variables.values()), compiler.ints,
+                    compiler.floats, compiler.bools, compiler.objects, condition, body, thenTaken, elseTaken,
+                    generation);
+        } catch (Untraceable untraceable) {
+            return null;
+        }
+    }
+
+    private BoolCode condition(Expr condition) {
+        Code code = value(condition);
+        if (code.type != ValueType.BOOL)
+            throw UNTRACEABLE;
+        return (BoolCode) code.run;
+    }
+
+    private Step statement(Stmt stmt) {
+        if (stmt instanceof Stmt.Block)
+            return block((Stmt.Block) stmt);
+        if (stmt instanceof Stmt.Expression)
+            return discard(expression(((Stmt.Expression) stmt).expression));
+        if (stmt instanceof Stmt.Print)
+            return print((Stmt.Print) stmt);
+        if (stmt instanceof Stmt.If)
+            return ifStatement((Stmt.If) stmt);
+        throw UNTRACEABLE;
+    }
+
+    private Step block(Stmt.Block block) {
+        Frame frame = new Frame(block);
+        frames.add(frame);
+        Step[] steps = new Step[block.statements.size()];
+        for (int i = 0; i < steps.length; i++) {
+            frame.index = i;
+            steps[i] = statement(block.statements.get(i));
+        }
+        frames.remove(frames.size() - 1);
+
+        int size = steps.length;
+        Token keyword = block.keyword;
+        return registers -> {
+            registers.interpreter.safepoint(size, keyword);
+            for (Step step : steps)
+                step.run(registers);
+        };
+    }
+
+    private Step print(Stmt.Print stmt) {
+        ObjectCode value = boxed(expression(stmt.expression));
+        return registers -> registers.interpreter.output(String.valueOf(value.run(registers)));
+    }
+
+    // Arms taken while recording are compiled; the others exit the trace.
+    private Step ifStatement(Stmt.If stmt) {
+        BoolCode condition = condition(stmt.condition);
+        LoopTrace.SideExit toThen = thenTaken.contains(stmt) ? null : exit(stmt, true);
+        LoopTrace.SideExit toElse = elseTaken.contains(stmt) ? null : exit(stmt, false);
+        Step then = toThen == null ? statement(stmt.thenBranch) : null;
+        Step otherwise = toElse == null && stmt.elseBranch != null ? statement(stmt.elseBranch) : null;
+
+        if (toThen != null && toElse != null)
+            return registers -> {
+                throw condition.run(registers) ? toThen : toElse;
+            };
+        if (toThen != null)
+            return registers -> {
+                if (condition.run(registers))
+                    throw toThen;
+                if (otherwise != null)
+                    otherwise.run(registers);
+            };
+        if (toElse != null)
+            return registers -> {
+                if (!condition.run(registers))
+                    throw toElse;
+                then.run(registers);
+            };
+        if (otherwise == null)
+            return registers -> {
+                if (condition.run(registers))
+                    then.run(registers);
+            };
+        return registers -> {
+            if (condition.run(registers))
+                then.run(registers);
+            else
+                otherwise.run(registers);
+        };
+    }
+
+    private LoopTrace.SideExit exit(Stmt.If stmt, boolean then) {
+        LoopTrace.Frame[] snapshot = new LoopTrace.Frame[frames.size()];
+        for (int i = 0; i < snapshot.length; i++) {
+            Frame frame = frames.get(i);
+            snapshot[i] = new LoopTrace.Frame(frame.block, frame.index);
+        }
+        return new LoopTrace.SideExit(stmt, then, snapshot);
+    }
+
+    // An expression with a value, which every operand has to be.
+    private Code value(Expr expr) {
+        Code code = expression(expr);
+        if (code.type == ValueType.VOID)
+            throw UNTRACEABLE;
+        return code;
+    }
+
+    private Code expression(Expr expr) {
+        if (expr instanceof Expr.Literal)
+            return literal(((Expr.Literal) expr).value);
+        if (expr instanceof Expr.Grouping)
+            return expression(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable) expr;
+            return load(resolve(variable.name, variable.slot));
+        }
+        if (expr instanceof Expr.Assign)
+            return assign((Expr.Assign) expr);
+        if (expr instanceof Expr.Unary)
+            return unary((Expr.Unary) expr);
+        if (expr instanceof Expr.Binary)
+            return binary((Expr.Binary) expr);
+        if (expr instanceof Expr.Logical)
+            return logical((Expr.Logical) expr);
+        if (expr instanceof Expr.Index)
+            return index((Expr.Index) expr);
+        if (expr instanceof Expr.IndexAssign)
+            return indexAssign((Expr.IndexAssign) expr);
+        if (expr instanceof Expr.Call)
+            return call((Expr.Call) expr);
+        if (expr instanceof Expr.CacheStore) {
+            Expr.CacheStore store = (Expr.CacheStore) expr;
+            Code value = value(store.expression);
+            Variable cache = new Variable(null, store.slot, value.type, register(value.type));
+            caches.put(store.slot, cache);
+            return store(cache, value);
+        }
+        if (expr instanceof Expr.CacheLoad) {
+            Variable cache = caches.get(((Expr.CacheLoad) expr).slot);
+            if (cache == null)
+                throw UNTRACEABLE;
+            return load(cache);
+        }
+        throw UNTRACEABLE;
+    }
+
+    private Code literal(Object value) {
+        ValueType type = ValueType.of(value);
+        if (type == null || type.isArray())
+            throw UNTRACEABLE;
+        return constant(value);
+    }
+
+    private static Code constant(Object value) {
+        switch (ValueType.of(value)) {
+            case INT: {
+                int constant = (int) value;
+                return new Code(ValueType.INT, (IntCode) registers -> constant);
+            }
+            case CHAR: {
+                char constant = (char) value;
+                return new Code(ValueType.CHAR, (IntCode) registers -> constant);
+            }
+            case FLOAT: {
+                double constant = (double) value;
+                return new Code(ValueType.FLOAT, (FloatCode) registers -> constant);
+            }
+            case BOOL: {
+                boolean constant = (boolean) value;
+                return new Code(ValueType.BOOL, (BoolCode) registers -> constant);
+            }
+            default:
+                return new Code(ValueType.of(value), (ObjectCode) registers -> value);
+        }
+    }
+
+    // Variables are declared before the loop (VARs only come at the top of
+    // a program, a function or a FOR), so they exist now. Their types are
+    // guarded on entry.
+    private Variable resolve(Token name, int slot) {
+        Object key = slot >= 0 ? (Object) slot : name.lexeme;
+        Variable variable = variables.get(key);
+        if (variable != null)
+            return variable;
+
+        Object value;
+        try {
+            value = slot >= 0 ? interpreter.local(name, slot) : interpreter.lookUp(name);
+        } catch (RuntimeError error) {
+            throw UNTRACEABLE;
+        }
+        ValueType type = ValueType.of(value);
+        if (type == null)
+            throw UNTRACEABLE;
+        variable = new Variable(name, slot, type, register(type));
+        variables.put(key, variable);
+        return variable;
+    }
+
+    private int register(ValueType type) {
+        switch (type) {
+            case INT:
+            case CHAR:
+                return ints++;
+            case FLOAT:
+                return floats++;
+            case BOOL:
+                return bools++;
+            default:
+                return objects++;
+        }
+    }
+
+    private static Code load(Variable variable) {
+        int register = variable.register;
+        switch (variable.type) {
+            case INT:
+            case CHAR:
+                return new Code(variable.type, (IntCode) registers -> registers.ints[register]);
+            case FLOAT:
+                return new Code(variable.type, (FloatCode) registers -> registers.floats[register]);
+            case BOOL:
+                return new Code(variable.type, (BoolCode) registers -> registers.bools[register]);
+            default:
+                return new Code(variable.type, (ObjectCode) registers -> registers.objects[register]);
+        }
+    }
+
+    // value has the variable's type.
+    private static Code store(Variable variable, Code value) {
+        int register = variable.register;
+        switch (variable.type) {
+            case INT:
+            case CHAR: {
+                IntCode code = (IntCode) value.run;
+                return new Code(variable.type, (IntCode) registers -> registers.ints[register] = code.run(registers));
+            }
+            case FLOAT: {
+                FloatCode code = (FloatCode) value.run;
+                return new Code(variable.type,
+                        (FloatCode) registers -> registers.floats[register] = code.run(registers));
+            }
+            case BOOL: {
+                BoolCode code = (BoolCode) value.run;
+                return new Code(variable.type,
+                        (BoolCode) registers -> registers.bools[register] = code.run(registers));
+            }
+            default: {
+                ObjectCode code = (ObjectCode) value.run;
+                return new Code(variable.type,
+                        (ObjectCode) registers -> registers.objects[register] = code.run(registers));
+            }
+        }
+    }
+
+    // Environment.assign only takes a value of the variable's own class, and
+    // arrays cannot be assigned at all.
+    private Code assign(Expr.Assign expr) {
+        Code value = value(expr.value);
+        Variable variable = resolve(expr.name, expr.slot);
+        if (value.type != variable.type || value.type.isArray())
+            throw UNTRACEABLE;
+        variable.assigned = true;
+        return store(variable, value);
+    }
+
+    private Code unary(Expr.Unary expr) {
+        Code right = value(expr.right);
+        switch (expr.operator.type) {
+            case NOT:
+            case BANG:
+                if (right.type != ValueType.BOOL)
+                    throw UNTRACEABLE;
+                BoolCode operand = (BoolCode) right.run;
+                return new Code(ValueType.BOOL, (BoolCode) registers -> !operand.run(registers));
+            case MINUS:
+                if (right.type == ValueType.INT) {
+                    IntCode number = (IntCode) right.run;
+                    return new Code(ValueType.INT, (IntCode) registers -> -number.run(registers));
+                }
+                if (right.type == ValueType.FLOAT) {
+                    FloatCode number = (FloatCode) right.run;
+                    return new Code(ValueType.FLOAT, (FloatCode) registers -> -number.run(registers));
+                }
+                throw UNTRACEABLE;
+            default:
+                throw UNTRACEABLE;
+        }
+    }
+
+    private Code binary(Expr.Binary expr) {
+        if (expr.operator.type == TokenType.AMPERSAND)
+            return concat(expr);
+        Code left = value(expr.left);
+        Code right = value(expr.right);
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case EQUAL_EQUAL:
+                return equality(left, right, false);
+            case BANG_EQUAL:
+                return equality(left, right, true);
+            case PLUS:
+                if (left.type == ValueType.STRING && right.type == ValueType.STRING) {
+                    ObjectCode a = (ObjectCode) left.run;
+                    ObjectCode b = (ObjectCode) right.run;
+                    return new Code(ValueType.STRING, (ObjectCode) registers -> registers.interpreter
+                            .allocate(operator, (String) a.run(registers) + (String) b.run(registers)));
+                }
+                return arithmetic(operator, left, right);
+            default:
+                return arithmetic(operator, left, right);
+        }
+    }
+
+    // One operand of a chain of &, appended as toString() on its box would be.
+    private interface Piece {
+        void append(LoopTrace.Registers registers, StringBuilder text);
+    }
+
+    // A chain of & builds one STRING, charged as the interpreter charges it.
+    private Code concat(Expr.Binary expr) {
+        List<Piece> pieces = new ArrayList<>();
+        List<Token> operators = new ArrayList<>();
+        pieces(expr, pieces, operators);
+        Piece[] texts = pieces.toArray(new Piece[0]);
+        Token[] charged = operators.toArray(new Token[0]);
+        return new Code(ValueType.STRING, (ObjectCode) registers -> {
+            StringBuilder text = new StringBuilder();
+            texts[0].append(registers, text);
+            boolean wide = !Strings.latin1(text, 0);
+            for (int i = 1; i < texts.length; i++) {
+                int from = text.length();
+                texts[i].append(registers, text);
+                wide = wide || !Strings.latin1(text, from);
+                registers.interpreter.allocate(charged[i - 1], wide ? 2L * text.length() : text.length());
+            }
+            return text.toString();
+        });
+    }
+
+    private void pieces(Expr expr, List<Piece> pieces, List<Token> operators) {
+        if (expr instanceof Expr.Binary && ((Expr.Binary) expr).operator.type == TokenType.AMPERSAND) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            pieces(binary.left, pieces, operators);
+            pieces.add(piece(value(binary.right)));
+            operators.add(binary.operator);
+        } else {
+            pieces.add(piece(value(expr)));
+        }
+    }
+
+    private static Piece piece(Code code) {
+        switch (code.type) {
+            case INT: {
+                IntCode number = (IntCode) code.run;
+                return (registers, text) -> text.append(number.run(registers));
+            }
+            case CHAR: {
+                IntCode character = (IntCode) code.run;
+                return (registers, text) -> text.append((char) character.run(registers));
+            }
+            case FLOAT: {
+                FloatCode number = (FloatCode) code.run;
+                return (registers, text) -> text.append(number.run(registers));
+            }
+            case BOOL: {
+                BoolCode bool = (BoolCode) code.run;
+                return (registers, text) -> text.append(bool.run(registers));
+            }
+            default: {
+                ObjectCode value = (ObjectCode) code.run;
+                return (registers, text) -> text.append(value.run(registers).toString());
+            }
+        }
+    }
+
+    // Numeric's rules: two INTs stay INT, anything with a FLOAT is FLOAT.
+    private static Code arithmetic(Token operator, Code left, Code right) {
+        if (!left.type.isNumber() || !right.type.isNumber())
+            throw UNTRACEABLE;
+        if (left.type == ValueType.INT && right.type == ValueType.INT) {
+            IntCode a = (IntCode) left.run;
+            IntCode b = (IntCode) right.run;
+            switch (operator.type) {
+                case PLUS:
+                    return new Code(ValueType.INT, (IntCode) registers -> a.run(registers) + b.run(registers));
+                case MINUS:
+                    return new Code(ValueType.INT, (IntCode) registers -> a.run(registers) - b.run(registers));
+                case STAR:
+                    return new Code(ValueType.INT, (IntCode) registers -> a.run(registers) * b.run(registers));
+                case SLASH:
+                    return new Code(ValueType.INT,
+                            (IntCode) registers -> CompiledRuntime.divide(operator, a.run(registers), b.run(registers)));
+                case MODULO:
+                    return new Code(ValueType.INT,
+                            (IntCode) registers -> CompiledRuntime.modulo(operator, a.run(registers), b.run(registers)));
+                case GREATER:
+                    return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) > b.run(registers));
+                case GREATER_EQUAL:
+                    return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) >= b.run(registers));
+                case LESS:
+                    return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) < b.run(registers));
+                case LESS_EQUAL:
+                    return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) <= b.run(registers));
+                default:
+                    throw UNTRACEABLE;
+            }
+        }
+
+        FloatCode a = floats(left);
+        FloatCode b = floats(right);
+        switch (operator.type) {
+            case PLUS:
+                return new Code(ValueType.FLOAT, (FloatCode) registers -> a.run(registers) + b.run(registers));
+            case MINUS:
+                return new Code(ValueType.FLOAT, (FloatCode) registers -> a.run(registers) - b.run(registers));
+            case STAR:
+                return new Code(ValueType.FLOAT, (FloatCode) registers -> a.run(registers) * b.run(registers));
+            case SLASH:
+                return new Code(ValueType.FLOAT, (FloatCode) registers -> a.run(registers) / b.run(registers));
+            case GREATER:
+                return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) > b.run(registers));
+            case GREATER_EQUAL:
+                return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) >= b.run(registers));
+            case LESS:
+                return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) < b.run(registers));
+            case LESS_EQUAL:
+                return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) <= b.run(registers));
+            default:
+                throw UNTRACEABLE;
+        }
+    }
+
+    // Object.equals: values of different types are never equal.
+    private static Code equality(Code left, Code right, boolean negate) {
+        BoolCode equal;
+        if (left.type != right.type) {
+            ObjectCode a = boxed(left);
+            ObjectCode b = boxed(right);
+            equal = registers -> {
+                a.run(registers);
+                b.run(registers);
+                return false;
+            };
+        } else {
+            switch (left.type) {
+                case INT:
+                case CHAR: {
+                    IntCode a = (IntCode) left.run;
+                    IntCode b = (IntCode) right.run;
+                    equal = registers -> a.run(registers) == b.run(registers);
+                    break;
+                }
+                case FLOAT: {
+                    FloatCode a = (FloatCode) left.run;
+                    FloatCode b = (FloatCode) right.run;
+                    equal = registers -> CompiledRuntime.sameFloat(a.run(registers), b.run(registers));
+                    break;
+                }
+                case BOOL: {
+                    BoolCode a = (BoolCode) left.run;
+                    BoolCode b = (BoolCode) right.run;
+                    equal = registers -> a.run(registers) == b.run(registers);
+                    break;
+                }
+                default: {
+                    ObjectCode a = (ObjectCode) left.run;
+                    ObjectCode b = (ObjectCode) right.run;
+                    equal = registers -> a.run(registers).equals(b.run(registers));
+                    break;
+                }
+            }
+        }
+        if (!negate)
+            return new Code(ValueType.BOOL, equal);
+        BoolCode test = equal;
+        return new Code(ValueType.BOOL, (BoolCode) registers -> !test.run(registers));
+    }
+
+    // AND and OR hand back one of their operands, so only BOOLs stay BOOL.
+    private Code logical(Expr.Logical expr) {
+        Code left = value(expr.left);
+        Code right = value(expr.right);
+        if (left.type != ValueType.BOOL || right.type != ValueType.BOOL)
+            throw UNTRACEABLE;
+        BoolCode a = (BoolCode) left.run;
+        BoolCode b = (BoolCode) right.run;
+        if (expr.operator.type == TokenType.OR)
+            return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) || b.run(registers));
+        return new Code(ValueType.BOOL, (BoolCode) registers -> a.run(registers) && b.run(registers));
+    }
+
+    private Code index(Expr.Index expr) {
+        Code array = value(expr.array);
+        Code index = value(expr.index);
+        if (!array.type.isArray() || index.type != ValueType.INT)
+            throw UNTRACEABLE;
+        ObjectCode a = (ObjectCode) array.run;
+        IntCode i = (IntCode) index.run;
+        Token bracket = expr.bracket;
+        switch (array.type) {
+            case INT_ARRAY:
+                return new Code(ValueType.INT, (IntCode) registers -> {
+                    CfplArray.IntArray values = (CfplArray.IntArray) a.run(registers);
+                    return values.values[values.index(bracket, i.run(registers))];
+                });
+            case FLOAT_ARRAY:
+                return new Code(ValueType.FLOAT, (FloatCode) registers -> {
+                    CfplArray.FloatArray values = (CfplArray.FloatArray) a.run(registers);
+                    return values.values[values.index(bracket, i.run(registers))];
+                });
+            case BOOL_ARRAY:
+                return new Code(ValueType.BOOL, (BoolCode) registers -> {
+                    CfplArray.BoolArray values = (CfplArray.BoolArray) a.run(registers);
+                    return values.values[values.index(bracket, i.run(registers))];
+                });
+            default:
+                return new Code(ValueType.CHAR, (IntCode) registers -> {
+                    CfplArray.CharArray values = (CfplArray.CharArray) a.run(registers);
+                    return values.values[values.index(bracket, i.run(registers))];
+                });
+        }
+    }
+
+    // The index is checked before the value is evaluated. A FLOAT array
+    // takes an INT, which stays the value of the assignment.
+    private Code indexAssign(Expr.IndexAssign expr) {
+        Code array = value(expr.array);
+        Code index = value(expr.index);
+        Code value = value(expr.value);
+        if (!array.type.isArray() || index.type != ValueType.INT)
+            throw UNTRACEABLE;
+        ObjectCode a = (ObjectCode) array.run;
+        IntCode i = (IntCode) index.run;
+        Token bracket = expr.bracket;
+        ValueType element = array.type.element();
+        if (element == ValueType.FLOAT && value.type == ValueType.INT) {
+            IntCode v = (IntCode) value.run;
+            return new Code(ValueType.INT, (IntCode) registers -> {
+                CfplArray.FloatArray values = (CfplArray.FloatArray) a.run(registers);
+                int at = values.index(bracket, i.run(registers));
+                int number = v.run(registers);
+                values.values[at] = number;
+                return number;
+            });
+        }
+        if (value.type != element)
+            throw UNTRACEABLE;
+        switch (element) {
+            case INT: {
+                IntCode v = (IntCode) value.run;
+                return new Code(element, (IntCode) registers -> {
+                    CfplArray.IntArray values = (CfplArray.IntArray) a.run(registers);
+                    int at = values.index(bracket, i.run(registers));
+                    return values.values[at] = v.run(registers);
+                });
+            }
+            case FLOAT: {
+                FloatCode v = (FloatCode) value.run;
+                return new Code(element, (FloatCode) registers -> {
+                    CfplArray.FloatArray values = (CfplArray.FloatArray) a.run(registers);
+                    int at = values.index(bracket, i.run(registers));
+                    return values.values[at] = v.run(registers);
+                });
+            }
+            case BOOL: {
+                BoolCode v = (BoolCode) value.run;
+                return new Code(element, (BoolCode) registers -> {
+                    CfplArray.BoolArray values = (CfplArray.BoolArray) a.run(registers);
+                    int at = values.index(bracket, i.run(registers));
+                    return values.values[at] = v.run(registers);
+                });
+            }
+            default: {
+                IntCode v = (IntCode) value.run;
+                return new Code(element, (IntCode) registers -> {
+                    CfplArray.CharArray values = (CfplArray.CharArray) a.run(registers);
+                    int at = values.index(bracket, i.run(registers));
+                    return values.values[at] = (char) v.run(registers);
+                });
+            }
+        }
+    }
+
+    // Built-ins only; they check their own arguments. Calls to FUNs would
+    // need frames and are left to the tree walker.
+    private Code call(Expr.Call expr) {
+        Token name = expr.name;
+        if (interpreter.isFunction(name.lexeme) || !Builtins.isBuiltin(name.lexeme))
+            throw UNTRACEABLE;
+        ObjectCode[] arguments = new ObjectCode[expr.arguments.size()];
+        ValueType first = null;
+        for (int i = 0; i < arguments.length; i++) {
+            Code argument = value(expr.arguments.get(i));
+            if (i == 0)
+                first = argument.type;
+            arguments[i] = boxed(argument);
+        }
+        ObjectCode call = registers -> {
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < values.length; i++)
+                values[i] = arguments[i].run(registers);
+            return Builtins.call(name, Arrays.asList(values));
+        };
+
+        switch (name.lexeme) {
+            case "LENGTH":
+            case "COUNT":
+                return new Code(ValueType.INT, (IntCode) registers -> (int) call.run(registers));
+            case "SUM":
+            case "MIN":
+            case "MAX":
+            case "DOT":
+                if (first == ValueType.INT_ARRAY)
+                    return new Code(ValueType.INT, (IntCode) registers -> (int) call.run(registers));
+                if (first == ValueType.FLOAT_ARRAY)
+                    return new Code(ValueType.FLOAT, (FloatCode) registers -> (double) call.run(registers));
+                throw UNTRACEABLE;
+            default:
+                return new Code(ValueType.VOID, call);
+        }
+    }
+
+    private static FloatCode floats(Code code) {
+        if (code.type == ValueType.FLOAT)
+            return (FloatCode) code.run;
+        IntCode number = (IntCode) code.run;
+        return registers -> number.run(registers);
+    }
+
+    // The value as the tree walker would have it.
+    private static ObjectCode boxed(Code code) {
+        switch (code.type) {
+            case INT: {
+                IntCode number = (IntCode) code.run;
+                return registers -> number.run(registers);
+            }
+            case CHAR: {
+                IntCode character = (IntCode) code.run;
+                return registers -> (char) character.run(registers);
+            }
+            case FLOAT: {
+                FloatCode number = (FloatCode) code.run;
+                return registers -> number.run(registers);
+            }
+            case BOOL: {
+                BoolCode bool = (BoolCode) code.run;
+                return registers -> bool.run(registers);
+            }
+            default:
+                return (ObjectCode) code.run;
+        }
+    }
+
+    private static Step discard(Code code) {
+        switch (code.type) {
+            case INT:
+            case CHAR: {
+                IntCode run = (IntCode) code.run;
+                return registers -> run.run(registers);
+            }
+            case FLOAT: {
+                FloatCode run = (FloatCode) code.run;
+                return registers -> run.run(registers);
+            }
+            case BOOL: {
+                BoolCode run = (BoolCode) code.run;
+                return registers -> run.run(registers);
+            }
+            default: {
+                ObjectCode run = (ObjectCode) code.run;
+                return registers -> run.run(registers);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.craftingcfpl.CFPL;
+
+// The type of a value where code handles it without a box:
+// cfplc's generated Java, the loop traces of TraceCompiler and the tags of
+// Interpreter.evaluateTagged.
+enum ValueType {
+    INT("INT"), FLOAT("FLOAT"), BOOL("BOOL"), CHAR("CHAR"), STRING("STRING"),
+    INT_ARRAY("INT[]"), FLOAT_ARRAY("FLOAT[]"), BOOL_ARRAY("BOOL[]"), CHAR_ARRAY("CHAR[]"),
+    VOID("no value");
+
+    private final String name;
+
+    ValueType(String name) {
+        this.name = name;
+    }
+
+    static ValueType of(TokenType type, boolean array) {
+        switch (type) {
+            case INT:
+                return array ? INT_ARRAY : INT;
+            case FLOAT:
+                return array ? FLOAT_ARRAY : FLOAT;
+            case BOOL:
+                return array ? BOOL_ARRAY : BOOL;
+            case CHAR:
+                return array ? CHAR_ARRAY : CHAR;
+            default:
+                return STRING;
+        }
+    }
+
+    // The type of a runtime value, or null for null.
+    static ValueType of(Object value) {
+        if (value instanceof Integer)
+            return INT;
+        if (value instanceof Double)
+            return FLOAT;
+        if (value instanceof Boolean)
+            return BOOL;
+        if (value instanceof Character)
+            return CHAR;
+        if (value instanceof String)
+            return STRING;
+        if (value instanceof CfplArray.IntArray)
+            return INT_ARRAY;
+        if (value instanceof CfplArray.FloatArray)
+            return FLOAT_ARRAY;
+        if (value instanceof CfplArray.BoolArray)
+            return BOOL_ARRAY;
+        if (value instanceof CfplArray.CharArray)
+            return CHAR_ARRAY;
+        return null;
+    }
+
+    // INT, FLOAT, BOOL and CHAR values packed into a long: the int, the
+    // double's raw bits, 0 or 1, and the char. See Interpreter.evaluateTagged.
+    static long bits(Object value) {
+        if (value instanceof Integer)
+            return (int) value;
+        if (value instanceof Double)
+            return Double.doubleToRawLongBits((double) value);
+        if (value instanceof Boolean)
+            return (boolean) value ? 1 : 0;
+        return (char) value;
+    }
+
+    Object box(long bits) {
+        switch (this) {
+            case INT:
+                return (int) bits;
+            case FLOAT:
+                return Double.longBitsToDouble(bits);
+            case BOOL:
+                return bits != 0;
+            default:
+                return (char) bits;
+        }
+    }
+
+    // The type of a value that packs into a long; null for anything else.
+    static ValueType packed(Object value) {
+        if (value instanceof Integer)
+            return INT;
+        if (value instanceof Double)
+            return FLOAT;
+        if (value instanceof Boolean)
+            return BOOL;
+        if (value instanceof Character)
+            return CHAR;
+        return null;
+    }
+
+    boolean isArray() {
+        return this == INT_ARRAY || this == FLOAT_ARRAY || this == BOOL_ARRAY || this == CHAR_ARRAY;
+    }
+
+    boolean isNumber() {
+        return this == INT || this == FLOAT;
+    }
+
+    ValueType element() {
+        switch (this) {
+            case INT_ARRAY:
+                return INT;
+            case FLOAT_ARRAY:
+                return FLOAT;
+            case BOOL_ARRAY:
+                return BOOL;
+            default:
+                return CHAR;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,238 @@
+package com.craftingcfpl.CFPL;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD kernels on the preferred vector shape; tails run the scalar loop. Only
+// loaded by ArrayOps.select() once jdk.incubator.vector is known to be present.
+// FLOAT sums and dot products add lane by lane, so their rounding can differ
+// from ScalarArrayOps.
+class VectorArrayOps implements ArrayOps {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() {
+        return "vector (" + INTS.vectorBitSize() + " bit)";
+    }
+
+    // Every vector operation below names its operator directly: with the
+    // operator in a variable C2 does not intrinsify it and the loop runs
+    // several times slower than the scalar one. The switch is loop invariant
+    // and gets unswitched.
+    @Override
+    public void lanewise(Op op, int[] a, int[] b, int[] result) {
+        int i = 0;
+        for (int bound = INTS.loopBound(result.length); i < bound; i += INTS.length()) {
+            IntVector x = IntVector.fromArray(INTS, a, i);
+            IntVector y = IntVector.fromArray(INTS, b, i);
+            switch (op) {
+                case ADD:
+                    x.add(y).intoArray(result, i);
+                    break;
+                case SUB:
+                    x.sub(y).intoArray(result, i);
+                    break;
+                case MUL:
+                    x.mul(y).intoArray(result, i);
+                    break;
+                default:
+                    x.div(y).intoArray(result, i);
+                    break;
+            }
+        }
+        for (; i < result.length; i++)
+            result[i] = op.apply(a[i], b[i]);
+    }
+
+    @Override
+    public void lanewise(Op op, double[] a, double[] b, double[] result) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(result.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, a, i);
+            DoubleVector y = DoubleVector.fromArray(DOUBLES, b, i);
+            switch (op) {
+                case ADD:
+                    x.add(y).intoArray(result, i);
+                    break;
+                case SUB:
+                    x.sub(y).intoArray(result, i);
+                    break;
+                case MUL:
+                    x.mul(y).intoArray(result, i);
+                    break;
+                default:
+                    x.div(y).intoArray(result, i);
+                    break;
+            }
+        }
+        for (; i < result.length; i++)
+            result[i] = op.apply(a[i], b[i]);
+    }
+
+    @Override
+    public int sum(int[] values) {
+        IntVector sums = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = INTS.loopBound(values.length); i < bound; i += INTS.length())
+            sums = sums.add(IntVector.fromArray(INTS, values, i));
+        int sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public double sum(double[] values) {
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(values.length); i < bound; i += DOUBLES.length())
+            sums = sums.add(DoubleVector.fromArray(DOUBLES, values, i));
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public int min(int[] values) {
+        IntVector mins = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+        int i = 0;
+        for (int bound = INTS.loopBound(values.length); i < bound; i += INTS.length())
+            mins = mins.min(IntVector.fromArray(INTS, values, i));
+        int min = mins.reduceLanes(VectorOperators.MIN);
+        for (; i < values.length; i++)
+            min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public double min(double[] values) {
+        DoubleVector mins = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(values.length); i < bound; i += DOUBLES.length())
+            mins = mins.min(DoubleVector.fromArray(DOUBLES, values, i));
+        double min = mins.reduceLanes(VectorOperators.MIN);
+        for (; i < values.length; i++)
+            min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public int max(int[] values) {
+        IntVector maxes = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        int i = 0;
+        for (int bound = INTS.loopBound(values.length); i < bound; i += INTS.length())
+            maxes = maxes.max(IntVector.fromArray(INTS, values, i));
+        int max = maxes.reduceLanes(VectorOperators.MAX);
+        for (; i < values.length; i++)
+            max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public double max(double[] values) {
+        DoubleVector maxes = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(values.length); i < bound; i += DOUBLES.length())
+            maxes = maxes.max(DoubleVector.fromArray(DOUBLES, values, i));
+        double max = maxes.reduceLanes(VectorOperators.MAX);
+        for (; i < values.length; i++)
+            max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public int dot(int[] a, int[] b) {
+        IntVector sums = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = INTS.loopBound(a.length); i < bound; i += INTS.length())
+            sums = sums.add(IntVector.fromArray(INTS, a, i).mul(IntVector.fromArray(INTS, b, i)));
+        int dot = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++)
+            dot += a[i] * b[i];
+        return dot;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b) {
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(a.length); i < bound; i += DOUBLES.length())
+            sums = sums.add(DoubleVector.fromArray(DOUBLES, a, i).mul(DoubleVector.fromArray(DOUBLES, b, i)));
+        double dot = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++)
+            dot += a[i] * b[i];
+        return dot;
+    }
+
+    @Override
+    public int count(Compare compare, int[] values, int operand) {
+        int count = 0;
+        int i = 0;
+        for (int bound = INTS.loopBound(values.length); i < bound; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, i);
+            switch (compare) {
+                case LT:
+                    count += v.compare(VectorOperators.LT, operand).trueCount();
+                    break;
+                case LE:
+                    count += v.compare(VectorOperators.LE, operand).trueCount();
+                    break;
+                case GT:
+                    count += v.compare(VectorOperators.GT, operand).trueCount();
+                    break;
+                case GE:
+                    count += v.compare(VectorOperators.GE, operand).trueCount();
+                    break;
+                case EQ:
+                    count += v.compare(VectorOperators.EQ, operand).trueCount();
+                    break;
+                default:
+                    count += v.compare(VectorOperators.NE, operand).trueCount();
+                    break;
+            }
+        }
+        for (; i < values.length; i++) {
+            if (compare.test(values[i], operand))
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int count(Compare compare, double[] values, double operand) {
+        int count = 0;
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(values.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, values, i);
+            switch (compare) {
+                case LT:
+                    count += v.compare(VectorOperators.LT, operand).trueCount();
+                    break;
+                case LE:
+                    count += v.compare(VectorOperators.LE, operand).trueCount();
+                    break;
+                case GT:
+                    count += v.compare(VectorOperators.GT, operand).trueCount();
+                    break;
+                case GE:
+                    count += v.compare(VectorOperators.GE, operand).trueCount();
+                    break;
+                case EQ:
+                    count += v.compare(VectorOperators.EQ, operand).trueCount();
+                    break;
+                default:
+                    count += v.compare(VectorOperators.NE, operand).trueCount();
+                    break;
+            }
+        }
+        for (; i < values.length; i++) {
+            if (compare.test(values[i], operand))
+                count++;
+        }
+        return count;
+    }
+}